@@ -0,0 +1,55 @@
+import java.util.random.RandomGenerator;
+
+/**
+ * Annual returns bootstrapped from history rather than drawn from a distribution: each trial's years are filled
+ * by contiguous blocks of <code>blockLength</code> actual years (each block starting at a random year, and
+ * wrapping around from the last year to the first), and each year's stock and bond returns are blended by the
+ * <code>ReturnSchedule</code>'s stock allocation. Blocks keep the year-to-year dependence (momentum, mean
+ * reversion) that independent draws lose.
+ *
+ * @author Charlie Barnes
+ */
+public class BootstrapReturnModel implements ReturnModel {
+    // historical returns are resampled in contiguous blocks of this many years, by default
+    public static final int DEFAULT_BLOCK_LENGTH = 5;
+
+    private final HistoricalReturns historicalReturns;
+    private final int blockLength;
+
+    /**
+     * Class constructor
+     * @param historicalReturns the historical series to resample
+     * @param blockLength       the (positive) number of consecutive historical years in each block, at most the
+     *                          length of the series
+     * @throws IllegalArgumentException if <code>blockLength</code> is not positive or exceeds the series' length
+     */
+    public BootstrapReturnModel(HistoricalReturns historicalReturns, int blockLength) {
+        if (blockLength <= 0 || blockLength > historicalReturns.getYears()) {
+            throw new IllegalArgumentException("blockLength must be between 1 and the number of historical years");
+        }
+        this.historicalReturns = historicalReturns;
+        this.blockLength = blockLength;
+    }
+
+    public void fillReturns(ReturnSchedule schedule, double[] returns, int trials, RandomGenerator rng) {
+        double[] stockAllocations = schedule.getStockAllocations();
+        int years = stockAllocations.length;
+        int historicalYears = historicalReturns.getYears();
+        for (int trial = 0; trial < trials; trial++) {
+            int index = 0;
+            for (int year = 0; year < years; year++) {
+                // start a new block of history, or continue the current one
+                index = year % blockLength == 0 ? rng.nextInt(historicalYears) : (index + 1) % historicalYears;
+                returns[year * trials + trial] = historicalReturns.getReturn(index, stockAllocations[year]);
+            }
+        }
+    }
+
+    public HistoricalReturns getHistoricalReturns() { return historicalReturns; }
+    public int getBlockLength() { return blockLength; }
+
+    public String getDescription() {
+        return "bootstrapped from " + historicalReturns.getFirstYear() + "-" + historicalReturns.getLastYear() +
+                " returns in " + blockLength + "-year blocks";
+    }
+}
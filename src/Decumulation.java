@@ -0,0 +1,222 @@
+import java.util.Arrays;
+import java.util.random.RandomGenerator.SplittableGenerator;
+import java.util.stream.IntStream;
+
+/**
+ * The retirement phase of a <code>MonteCarloSimulation</code>: each trial's path is continued from its TDF balance
+ * at retirement, withdrawing an inflation-adjusted income each year, to find the age (if any) at which the
+ * balance runs out. Poor returns early in retirement deplete a balance much faster than the same returns late in
+ * retirement (sequence-of-returns risk), which the initial withdrawal amount alone doesn't show.
+ * <p>
+ * Each year, starting at the retirement age, the year's withdrawal is taken from the balance (if the balance can't
+ * cover it, the trial is ruined at that age), the rest grows by the next year's return (drawn from the
+ * simulation's <code>ReturnModel</code>, or normal returns, with the allocation following
+ * <code>VANGUARD_GLIDE_PATH</code>), and the withdrawal grows with inflation. The first withdrawal is the
+ * withdrawal rate times the balance at retirement.
+ * <p>
+ * The trials' outcomes at retirement are reused rather than re-simulated. Their retirement-phase returns come
+ * from random streams reserved for this phase (block <em>b</em> uses stream <code>STREAM_OFFSET + b</code>), so
+ * the results are reproducible from the simulation's seed, don't depend on the number of cores, and are the same
+ * at every withdrawal rate (so rates can be compared without noise from different draws).
+ *
+ * @author Charlie Barnes
+ */
+public class Decumulation {
+    // the average annual US inflation (CPI) from 1926 through 2021, roughly
+    public static final double DEFAULT_INFLATION = .03;
+    // paths are followed up to (but not including) this age, by default (which covers practically every lifetime)
+    public static final int DEFAULT_HORIZON_AGE = MortalityTable.MAX_AGE;
+    // retirement-phase returns for block b come from random stream STREAM_OFFSET + b
+    public static final long STREAM_OFFSET = 1L << 40;
+    // ages at death for block b come from random stream MORTALITY_STREAM_OFFSET + b
+    public static final long MORTALITY_STREAM_OFFSET = 2L << 40;
+    // the depletion age recorded for trials never ruined before the horizon
+    public static final int NEVER_DEPLETED = 0;
+
+    private final double withdrawalRate;
+    private final double inflation;
+    private final int retirementAge;
+    private final int horizonAge;
+    private final RandomStreams randomStreams;
+    // each trial's weight (null if unweighted)
+    private final double[] weights;
+    // each trial's depletion age (or NEVER_DEPLETED), indexed by trial number
+    private final byte[] depletionAges;
+    // ruinedBy[i] is the (weighted) share of trials ruined at or before age retirementAge + i
+    private final double[] ruinedBy;
+
+    /**
+     * Class constructor
+     * @param sim               a <code>MonteCarloSimulation</code> (not a streaming or off-heap one)
+     * @param withdrawalRate    the (positive) initial withdrawal rate, as a <code>double</code> (e.g., 0.04 for 4%)
+     * @param inflation         the annual growth of the withdrawals, as a <code>double</code> (e.g., 0.03 for 3%)
+     * @param horizonAge        the age up to which paths are followed, greater than the retirement age and at
+     *                          most 127
+     * @throws IllegalArgumentException if <code>withdrawalRate</code> is not positive or <code>horizonAge</code>
+     *                                  is out of range
+     * @throws IllegalStateException if <code>sim</code> is a streaming or off-heap simulation
+     */
+    public Decumulation(MonteCarloSimulation sim, double withdrawalRate, double inflation, int horizonAge) {
+        double[] tdfBalances = sim.getTdfBalances();
+        if (tdfBalances == null) {
+            throw new IllegalStateException("a streaming or off-heap simulation doesn't store outcomes on the heap");
+        }
+        if (!(withdrawalRate > 0)) throw new IllegalArgumentException("withdrawalRate must be positive");
+        ReturnSchedule accumulation = new ReturnSchedule(sim.getMember().getTrsAccount());
+        retirementAge = accumulation.getLastYear();
+        if (horizonAge <= retirementAge || horizonAge > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("horizonAge must be after retirement, and at most " + Byte.MAX_VALUE);
+        }
+        this.withdrawalRate = withdrawalRate;
+        this.inflation = inflation;
+        this.horizonAge = horizonAge;
+        this.randomStreams = sim.getRandomStreams();
+        this.weights = sim.getWeights();
+
+        depletionAges = simulateDepletionAges(tdfBalances, new ReturnSchedule(retirementAge + 1, horizonAge),
+                sim.getReturnModel() != null ? sim.getReturnModel() : new NormalReturnModel(),
+                sim.getRandomStreams());
+
+        // accumulate the (weighted) share of trials ruined at each age
+        ruinedBy = new double[horizonAge - retirementAge];
+        double totalWeight = 0;
+        for (int trial = 0; trial < depletionAges.length; trial++) {
+            double weight = weights != null ? weights[trial] : 1;
+            totalWeight += weight;
+            if (depletionAges[trial] != NEVER_DEPLETED) {
+                ruinedBy[depletionAges[trial] - retirementAge] += weight;
+            }
+        }
+        for (int i = 0; i < ruinedBy.length; i++) {
+            ruinedBy[i] = (i > 0 ? ruinedBy[i - 1] : 0) + ruinedBy[i] / totalWeight;
+        }
+    }
+
+    /**
+     * Class constructor, with <code>DEFAULT_INFLATION</code> and <code>DEFAULT_HORIZON_AGE</code>
+     * @param sim               a <code>MonteCarloSimulation</code> (not a streaming or off-heap one)
+     * @param withdrawalRate    the (positive) initial withdrawal rate, as a <code>double</code> (e.g., 0.04 for 4%)
+     */
+    public Decumulation(MonteCarloSimulation sim, double withdrawalRate) {
+        this(sim, withdrawalRate, DEFAULT_INFLATION, DEFAULT_HORIZON_AGE);
+    }
+
+    /**
+     * The path kernel: follows every trial through retirement, a block of trials at a time (in parallel)
+     * @param tdfBalances   each trial's TDF balance at retirement
+     * @param schedule      the years of retirement (the year after retirement through the horizon)
+     * @param returnModel   the model of annual returns
+     * @param randomStreams the simulation's source of randomness
+     * @return              each trial's depletion age (or <code>NEVER_DEPLETED</code>)
+     */
+    private byte[] simulateDepletionAges(double[] tdfBalances, ReturnSchedule schedule, ReturnModel returnModel,
+                                         RandomStreams randomStreams) {
+        int trials = tdfBalances.length;
+        int years = schedule.getYears();
+        int chunkSize = MonteCarloSimulation.RETURN_MODEL_CHUNK_SIZE;
+        int blockSize = MonteCarloSimulation.BLOCK_SIZE;
+        double growth = 1 + inflation;
+        byte[] ages = new byte[trials];
+        TrialScheduler.forEachBlock(0, (int) ((trials + (long) blockSize - 1) / blockSize),
+                () -> new double[chunkSize * years], (returns, block) -> {
+            SplittableGenerator rng = randomStreams.stream(STREAM_OFFSET + block);
+            int blockStart = block * blockSize;
+            int blockEnd = (int) Math.min(trials, (block + 1L) * blockSize);
+            // (stepping through the block by offset, which can't overflow as the trial number could)
+            for (int chunk = 0; chunk < blockEnd - blockStart; chunk += chunkSize) {
+                int chunkStart = blockStart + chunk;
+                int chunkTrials = Math.min(chunkSize, blockEnd - chunkStart);
+                returnModel.fillReturns(schedule, returns, chunkTrials, rng);
+                for (int trial = 0; trial < chunkTrials; trial++) {
+                    double balance = tdfBalances[chunkStart + trial];
+                    double withdrawal = withdrawalRate * balance;
+                    // a trial that reaches retirement with nothing (e.g., frozen at 0) can't cover even the first
+                    // year's withdrawal (and would otherwise "withdraw" 0 forever)
+                    byte depletionAge = balance <= 0 ? (byte) retirementAge : NEVER_DEPLETED;
+                    for (int year = 0; year < years && depletionAge == NEVER_DEPLETED; year++) {
+                        balance -= withdrawal;
+                        if (balance < 0) {
+                            depletionAge = (byte) (retirementAge + year);
+                            break;
+                        }
+                        balance *= 1 + returns[year * chunkTrials + trial] - ReturnSchedule.EXPENSE_RATIO;
+                        withdrawal *= growth;
+                    }
+                    ages[chunkStart + trial] = depletionAge;
+                }
+            }
+        });
+        return ages;
+    }
+
+    /**
+     * @param age   an age
+     * @return      the probability that the balance runs out at or before <code>age</code> (i.e., can't cover that
+     *              year's withdrawal), for <code>age</code> before the horizon (at later ages, the probability of
+     *              running out before the horizon)
+     */
+    public double getProbabilityOfRuinBy(int age) {
+        if (age < retirementAge) {
+            return 0;
+        }
+        return ruinedBy[Math.min(age, horizonAge - 1) - retirementAge];
+    }
+
+    /**
+     * Gives each trial an age at death, drawn from <code>mortalityTable</code> given survival to the retirement
+     * age (from random streams reserved for lifetimes, so the result is reproducible from the simulation's seed),
+     * and compares it to the trial's depletion age. Sampling a lifetime costs O(1) per trial.
+     * @param mortalityTable    the mortality table to draw lifetimes from
+     * @return                  the probability that the balance covers every withdrawal for the rest of the
+     *                          member's life (up to the horizon)
+     */
+    public double getProbabilityOfLastingForLife(MortalityTable mortalityTable) {
+        MortalityTable.Lifetimes lifetimes = mortalityTable.lifetimesFrom(Math.min(retirementAge,
+                mortalityTable.getMaxAge()));
+        int trials = depletionAges.length;
+        int blockSize = MonteCarloSimulation.BLOCK_SIZE;
+        // each block's (weighted) count of trials ruined while alive, and total weight
+        double[] ruined = new double[(int) ((trials + (long) blockSize - 1) / blockSize)];
+        double[] total = new double[ruined.length];
+        TrialScheduler.forEachBlock(0, ruined.length, block -> {
+            SplittableGenerator rng = randomStreams.stream(MORTALITY_STREAM_OFFSET + block);
+            int blockEnd = (int) Math.min(trials, (block + 1L) * blockSize);
+            for (int trial = block * blockSize; trial < blockEnd; trial++) {
+                int deathAge = lifetimes.sample(rng);
+                double weight = weights != null ? weights[trial] : 1;
+                total[block] += weight;
+                if (depletionAges[trial] != NEVER_DEPLETED && depletionAges[trial] <= deathAge) {
+                    ruined[block] += weight;
+                }
+            }
+        });
+        return 1 - Arrays.stream(ruined).sum() / Arrays.stream(total).sum();
+    }
+
+    /**
+     * @return  a new array (of size <code>trials</code>) of the age at which each trial's balance runs out (or
+     *          <code>NEVER_DEPLETED</code>, if it lasts till the horizon), indexed by trial number
+     */
+    public int[] getDepletionAges() {
+        return IntStream.range(0, depletionAges.length).map(trial -> depletionAges[trial]).toArray();
+    }
+
+    public double getWithdrawalRate() { return withdrawalRate; }
+    public double getInflation() { return inflation; }
+    public int getRetirementAge() { return retirementAge; }
+    public int getHorizonAge() { return horizonAge; }
+
+    /**
+     * @return  a string of the probability of ruin by every fifth age from the retirement age till the horizon,
+     *          intended to be printed to the console
+     */
+    public String toString() {
+        String str = "Withdrawing " + MonteCarloSimulation.formatRate(withdrawalRate) + " of the balance at " +
+                "retirement (age " + retirementAge + "), rising " + MonteCarloSimulation.formatRate(inflation) +
+                " a year:\n";
+        for (int age = (retirementAge / 5 + 1) * 5; age < horizonAge; age += 5) {
+            str += String.format("%22s%21.1f%%%n", "P(ruin by " + age + ")", 100 * getProbabilityOfRuinBy(age));
+        }
+        return str;
+    }
+}
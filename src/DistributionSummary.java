@@ -0,0 +1,114 @@
+import java.util.Arrays;
+
+/**
+ * An immutable summary of a sample distribution (e.g., the trial outcomes of a <code>MonteCarloSimulation</code>).
+ * <p>
+ * The sample is sorted once, when the summary is built. After that, percentiles are array lookups, the proportion
+ * of the sample below a threshold is a binary search, and the mean, standard deviation, and margin of error are
+ * precomputed. Results match those of the corresponding <code>Statistics</code> methods.
+ * <p>
+ * A summary can be rescaled (see <code>scaledBy</code>) without copying the sample, which is how one distribution
+ * of TDF balances answers for the initial withdrawal amounts at every withdrawal rate.
+ *
+ * @author Charlie Barnes
+ */
+public class DistributionSummary implements OutcomeSummary {
+    private final double[] sorted;
+    private final double scale;
+    private final double mean;
+    private final double sd;
+    private final double effectiveSampleSize;
+
+    /**
+     * Class constructor
+     * @param data  sample data, as a <code>double</code> array (which is copied, not modified)
+     * @throws IllegalArgumentException if <code>data</code> is empty
+     */
+    public DistributionSummary(double[] data) {
+        this(data, data.length);
+    }
+
+    /**
+     * Class constructor, for sample data whose entries are not independent (e.g., antithetic pairs)
+     * @param data                  sample data, as a <code>double</code> array (which is copied, not modified)
+     * @param effectiveSampleSize   the number of independent entries whose mean would be as precise as the mean
+     *                              of <code>data</code>
+     * @throws IllegalArgumentException if <code>data</code> is empty
+     */
+    public DistributionSummary(double[] data, double effectiveSampleSize) {
+        if (data.length == 0) throw new IllegalArgumentException("data must be non-empty");
+        sorted = data.clone();
+        TrialScheduler.parallelSort(sorted);
+        scale = 1;
+        mean = Statistics.mean(sorted);
+        sd = sorted.length > 1 ? Statistics.sd(sorted) : 0;
+        this.effectiveSampleSize = effectiveSampleSize;
+    }
+
+    private DistributionSummary(double[] sorted, double scale, double mean, double sd, double effectiveSampleSize) {
+        this.sorted = sorted;
+        this.scale = scale;
+        this.mean = mean;
+        this.sd = sd;
+        this.effectiveSampleSize = effectiveSampleSize;
+    }
+
+    /**
+     * @param factor    a positive <code>double</code>
+     * @throws IllegalArgumentException if <code>factor</code> is not positive
+     * @return  a summary of this sample with every entry multiplied by <code>factor</code> (sharing this sample)
+     */
+    public DistributionSummary scaledBy(double factor) {
+        if (!(factor > 0)) throw new IllegalArgumentException("factor must be positive");
+        return new DistributionSummary(sorted, scale * factor, mean * factor, sd * factor, effectiveSampleSize);
+    }
+
+    public long size() { return sorted.length; }
+    public double mean() { return mean; }
+    public double sd() { return sd; }
+    public double effectiveSampleSize() { return effectiveSampleSize; }
+    public double min() { return scale * sorted[0]; }
+    public double max() { return scale * sorted[sorted.length - 1]; }
+
+    /**
+     * @param i an index in the interval <em>[0, size())</em>
+     * @return  the <em>i</em>th smallest entry of the sample
+     */
+    public double get(int i) { return scale * sorted[i]; }
+
+    /**
+     * @param percentile    a <code>Double</code> value in the interval <em>[0,1]</em>
+     * @throws IllegalArgumentException    if percentile is less than 0 or greater than 1
+     * @return              the <em>100*percentile</em>th percentile entry of the data, as a <code>double</code>
+     */
+    public double percentile(double percentile) {
+        if (percentile < 0 || percentile > 1) {
+            throw new IllegalArgumentException("percentile must be between 0 and 1, inclusive");
+        }
+        double doubleIndex = percentile * (sorted.length - 1);
+        int indexBelow = (int) Math.floor(doubleIndex);
+        int indexAbove = (int) Math.ceil(doubleIndex);
+        return scale * (sorted[indexBelow] + sorted[indexAbove]) / 2;
+    }
+
+    /**
+     * @param threshold a <code>double</code>
+     * @return          the number of entries in the sample that are strictly less than <code>threshold</code>
+     */
+    public long countBelow(double threshold) {
+        // binary search for the first entry that is at least threshold
+        double unscaled = threshold / scale;
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] < unscaled) {
+                low = mid + 1;
+            }
+            else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,87 @@
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A cache of simulated TDF growth-factor distributions, keyed by investment horizon.
+ * <p>
+ * A trial's TDF balance at retirement is the member's account balance at resignation times a growth factor that
+ * depends only on the years the money is invested (<code>firstYear</code> through <code>lastYear</code>), not on
+ * the member's salary or balance. So when many members are simulated, each distinct horizon needs to be simulated
+ * only once; every member with that horizon gets the cached distribution scaled by their own principal.
+ * <p>
+ * Each horizon's growth factors are kept in trial order (as simulated), so the outcomes of a cached
+ * <code>MonteCarloSimulation</code> are indexed by trial number, just as a freshly simulated one's are, and its
+ * groups of blocks (for standard errors) are independent. Alongside them, each horizon keeps a (sorted)
+ * <code>DistributionSummary</code>, built once, which answers each member's summary by scaling it by their
+ * principal: nothing is copied or sorted per member (the per-trial balances are computed only if asked for).
+ *
+ * @author Charlie Barnes
+ */
+public class GrowthFactorCache {
+    private record Horizon(int firstYear, int lastYear, int trials) {}
+    private record Distribution(double[] growthFactors, DistributionSummary summary) {}
+
+    private final RandomStreams randomStreams;
+    private final ConcurrentHashMap<Horizon, Distribution> distributions = new ConcurrentHashMap<>();
+
+    /**
+     * Class constructor
+     * @param randomStreams the source of randomness shared by every simulation answered from this cache
+     */
+    public GrowthFactorCache(RandomStreams randomStreams) {
+        this.randomStreams = randomStreams;
+    }
+
+    /**
+     * Class constructor
+     * @param seed  the seed for the random number generator shared by every simulation answered from this cache
+     */
+    public GrowthFactorCache(long seed) {
+        this(new RandomStreams(seed));
+    }
+
+    /**
+     * @param schedule  the annual return distributions from resignation till retirement
+     * @param trials    the (positive) number of trials in the simulation
+     * @return          the array (of size <code>trials</code>) of growth factors for <code>schedule</code>'s horizon,
+     *                  indexed by trial number, simulating them if they aren't cached yet. The array is shared and
+     *                  must not be modified.
+     */
+    public double[] getGrowthFactors(ReturnSchedule schedule, int trials) {
+        return getDistribution(schedule, trials).growthFactors();
+    }
+
+    /**
+     * @param schedule  the annual return distributions from resignation till retirement
+     * @param trials    the (positive) number of trials in the simulation
+     * @return          the growth factors for <code>schedule</code>'s horizon and their summary, simulating them if
+     *                  they aren't cached yet
+     */
+    private Distribution getDistribution(ReturnSchedule schedule, int trials) {
+        Horizon horizon = new Horizon(schedule.getFirstYear(), schedule.getLastYear(), trials);
+        return distributions.computeIfAbsent(horizon, h -> {
+            double[] factors = MonteCarloSimulation.simulateGrowthFactors(schedule, trials, randomStreams);
+            return new Distribution(factors, new DistributionSummary(factors));
+        });
+    }
+
+    /**
+     * @param trials    the (positive) number of trials in the simulation
+     * @param member    a <code>TrsMember</code> instance
+     * @return          a <code>MonteCarloSimulation</code> for <code>member</code>, answered from the cache
+     */
+    public MonteCarloSimulation simulate(int trials, TrsMember member) {
+        Distribution distribution = getDistribution(new ReturnSchedule(member.getTrsAccount()), trials);
+        return new MonteCarloSimulation(trials, member, randomStreams, distribution.growthFactors(),
+                distribution.summary());
+    }
+
+    /**
+     * @return the number of horizons currently cached
+     */
+    public int size() { return distributions.size(); }
+
+    /**
+     * Empties the cache
+     */
+    public void clear() { distributions.clear(); }
+}
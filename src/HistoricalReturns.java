@@ -0,0 +1,234 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A series of actual annual stock and bond returns (e.g., 1926 to the present), for bootstrapping.
+ * <p>
+ * The series is read from a compact binary file, which is memory-mapped once when the series is loaded rather
+ * than parsed into objects. Returns are read with absolute gets, which never change the buffer's position, so a
+ * single <code>HistoricalReturns</code> can be shared by all worker threads. The file's layout is (big-endian):
+ * <ul>
+ *     <li>the <code>int</code> <code>MAGIC</code>, identifying the file,</li>
+ *     <li>the <code>int</code> first calendar year of the series,</li>
+ *     <li>the <code>int</code> number of years in the series, and</li>
+ *     <li>for each year, that year's stock return and then its bond return, as <code>double</code>s (e.g., 0.1 for
+ *     10%).</li>
+ * </ul>
+ * No such file ships with this project. One is created from a text file of annual returns (e.g., 1926 to the
+ * present, from the sources in Resources/HistoricalData) with <code>convert()</code>, or from the command line,
+ * <pre>
+ *     java HistoricalReturns returns.csv HistoricalReturns.bin
+ * </pre>
+ * The text file has one line per calendar year, holding the year, its stock return, and its bond return,
+ * separated by whitespace or a comma, e.g.
+ * <pre>
+ *     year,stocks,bonds
+ *     1926,0.1162,0.0777
+ *     1927,37.49%,8.93%
+ * </pre>
+ * Years must be consecutive and increasing. A return is a fraction (0.1 for 10%), or a percentage if it ends with
+ * "%". Blank lines and lines starting with "#" are skipped, as is a first line of column headings.
+ *
+ * @author Charlie Barnes
+ */
+public class HistoricalReturns {
+    // the file from which the series is loaded by default
+    public static final String DEFAULT_FILE = "HistoricalReturns.bin";
+    // the first four bytes of a historical returns file ("TRSR")
+    public static final int MAGIC = 0x54525352;
+    private static final int HEADER_BYTES = 3 * Integer.BYTES;
+    private static final int YEAR_BYTES = 2 * Double.BYTES;
+
+    private final ByteBuffer returns;
+    private final int firstYear;
+    private final int years;
+
+    private HistoricalReturns(ByteBuffer returns) throws IOException {
+        if (returns.capacity() < HEADER_BYTES || returns.getInt(0) != MAGIC) {
+            throw new IOException("not a historical returns file");
+        }
+        firstYear = returns.getInt(Integer.BYTES);
+        years = returns.getInt(2 * Integer.BYTES);
+        if (years <= 0 || returns.capacity() != HEADER_BYTES + (long) years * YEAR_BYTES) {
+            throw new IOException("historical returns file is truncated or corrupt");
+        }
+        this.returns = returns;
+    }
+
+    /**
+     * @return  the series in <code>DEFAULT_FILE</code>
+     * @throws IOException if the file can't be read or isn't a historical returns file
+     */
+    public static HistoricalReturns load() throws IOException {
+        return load(Path.of(DEFAULT_FILE));
+    }
+
+    /**
+     * @param file  a historical returns file (see the class description for its layout)
+     * @return      the series in <code>file</code>, memory-mapped
+     * @throws IOException if the file can't be read or isn't a historical returns file
+     */
+    public static HistoricalReturns load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // the mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new HistoricalReturns(buffer.order(ByteOrder.BIG_ENDIAN));
+        }
+    }
+
+    /**
+     * Writes a historical returns file
+     * @param file          the file to (over)write
+     * @param firstYear     the calendar year of the first return
+     * @param stockReturns  each year's stock return, as a <code>double</code> (e.g., 0.1 for 10%)
+     * @param bondReturns   each year's bond return (the same number of years as <code>stockReturns</code>)
+     * @throws IllegalArgumentException if there are no years, or the arrays' lengths differ
+     * @throws IOException if the file can't be written
+     */
+    public static void write(Path file, int firstYear, double[] stockReturns, double[] bondReturns) throws IOException {
+        if (stockReturns.length == 0) throw new IllegalArgumentException("at least one year is needed");
+        if (bondReturns.length != stockReturns.length) {
+            throw new IllegalArgumentException("stockReturns and bondReturns must be the same length");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + stockReturns.length * YEAR_BYTES)
+                .order(ByteOrder.BIG_ENDIAN);
+        buffer.putInt(MAGIC).putInt(firstYear).putInt(stockReturns.length);
+        for (int year = 0; year < stockReturns.length; year++) {
+            buffer.putDouble(stockReturns[year]).putDouble(bondReturns[year]);
+        }
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Converts a text file of annual returns (see the class description for its format) into a historical returns
+     * file
+     * @param text  the text file to read
+     * @param file  the historical returns file to (over)write
+     * @throws IOException if the text file can't be read or isn't a series of annual returns, or the historical
+     *                     returns file can't be written
+     */
+    public static void convert(Path text, Path file) throws IOException {
+        List<double[]> rows = new ArrayList<>();
+        int firstYear = 0;
+        boolean headingsAllowed = true;
+        try (BufferedReader in = Files.newBufferedReader(text)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("[\\s,]+");
+                // (only the first line may be column headings, which don't start with a year)
+                if (headingsAllowed && !fields[0].matches("-?\\d+")) {
+                    headingsAllowed = false;
+                    continue;
+                }
+                headingsAllowed = false;
+                try {
+                    int year = Integer.parseInt(fields[0]);
+                    if (rows.isEmpty()) {
+                        firstYear = year;
+                    }
+                    if (fields.length < 3 || year != firstYear + rows.size()) {
+                        throw new IOException("bad annual returns line: " + line);
+                    }
+                    rows.add(new double[] {parseReturn(fields[1]), parseReturn(fields[2])});
+                }
+                catch (NumberFormatException e) {
+                    throw new IOException("bad annual returns line: " + line);
+                }
+            }
+        }
+        if (rows.isEmpty()) throw new IOException("no annual returns in " + text);
+        double[] stockReturns = new double[rows.size()];
+        double[] bondReturns = new double[rows.size()];
+        for (int year = 0; year < rows.size(); year++) {
+            stockReturns[year] = rows.get(year)[0];
+            bondReturns[year] = rows.get(year)[1];
+        }
+        write(file, firstYear, stockReturns, bondReturns);
+    }
+
+    /**
+     * @param field a return, as a fraction (e.g., "0.1") or a percentage (e.g., "10%")
+     * @return      the return, as a fraction
+     * @throws NumberFormatException if <code>field</code> isn't a number
+     */
+    private static double parseReturn(String field) {
+        // (moving the decimal point, rather than dividing by 100, gives e.g. exactly 0.0893 for "8.93%")
+        if (field.endsWith("%")) {
+            return new BigDecimal(field.substring(0, field.length() - 1)).movePointLeft(2).doubleValue();
+        }
+        return Double.parseDouble(field);
+    }
+
+    /**
+     * Converts a text file of annual returns into a historical returns file (see <code>convert()</code>)
+     * @param args  the text file, and optionally the historical returns file to write (by default,
+     *              <code>DEFAULT_FILE</code>)
+     * @throws IOException if the text file can't be read or isn't a series of annual returns, or the historical
+     *                     returns file can't be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.out.println("usage: java HistoricalReturns returns.csv [" + DEFAULT_FILE + "]");
+            return;
+        }
+        Path file = Path.of(args.length > 1 ? args[1] : DEFAULT_FILE);
+        convert(Path.of(args[0]), file);
+        HistoricalReturns series = load(file);
+        System.out.println("wrote " + series.getYears() + " years (" + series.getFirstYear() + "-" +
+                series.getLastYear() + ") to " + file);
+    }
+
+    public int getFirstYear() { return firstYear; }
+    public int getLastYear() { return firstYear + years - 1; }
+
+    /**
+     * @return the number of years in the series
+     */
+    public int getYears() { return years; }
+
+    /**
+     * @param index the index of a year in the series (0 for <code>firstYear</code>)
+     * @return      that year's stock return
+     */
+    public double getStockReturn(int index) {
+        return returns.getDouble(HEADER_BYTES + index * YEAR_BYTES);
+    }
+
+    /**
+     * @param index the index of a year in the series (0 for <code>firstYear</code>)
+     * @return      that year's bond return
+     */
+    public double getBondReturn(int index) {
+        return returns.getDouble(HEADER_BYTES + index * YEAR_BYTES + Double.BYTES);
+    }
+
+    /**
+     * @param index             the index of a year in the series (0 for <code>firstYear</code>)
+     * @param stockAllocation   the fraction of the portfolio in stocks (the rest being in bonds), in <em>[0,1]</em>
+     * @return                  that year's return on the blended portfolio
+     */
+    public double getReturn(int index, double stockAllocation) {
+        int offset = HEADER_BYTES + index * YEAR_BYTES;
+        return stockAllocation * returns.getDouble(offset) + (1 - stockAllocation) * returns.getDouble(offset + Double.BYTES);
+    }
+}
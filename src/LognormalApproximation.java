@@ -0,0 +1,164 @@
+import org.apache.commons.math3.analysis.integration.gauss.GaussIntegrator;
+import org.apache.commons.math3.analysis.integration.gauss.GaussIntegratorFactory;
+import org.apache.commons.math3.distribution.NormalDistribution;
+
+/**
+ * A closed-form approximation of a <code>MonteCarloSimulation</code>'s outcomes, for instant previews.
+ * <p>
+ * A trial's growth factor is the product, over the years from resignation till retirement, of
+ * <em>1 + r - expense ratio</em>, where each year's return <em>r</em> is independent and normal. So the log of the
+ * growth factor is a sum of independent terms, whose means and variances are computed here by Gauss-Hermite
+ * quadrature. Treating that sum as normal (by the central limit theorem) makes the growth factor lognormal, with
+ * closed-form percentiles and probabilities. The mean growth factor is exactly the product of the yearly means.
+ * <p>
+ * The approximation ignores the (negligible) chance of a TDF balance reaching zero, and is least accurate in the
+ * tails when there are few years till retirement. Use <code>getErrorReport</code> to measure it against a
+ * simulation.
+ *
+ * @author Charlie Barnes
+ */
+public class LognormalApproximation {
+    // 32-point Gauss-Hermite rule, for integrals of f(x) e^(-x^2) over the real line
+    private static final GaussIntegrator HERMITE = new GaussIntegratorFactory().hermite(32);
+
+    private final TrsMember member;
+    private final int principal;
+    private final double logMean;
+    private final double logSd;
+    private final double meanGrowth;
+
+    /**
+     * Class constructor
+     * @param member    a <code>TrsMember</code> instance
+     */
+    public LognormalApproximation(TrsMember member) {
+        this.member = member;
+        principal = member.getTrsAccount().getAccountBalanceAtResignation();
+        ReturnSchedule schedule = new ReturnSchedule(member.getTrsAccount());
+        double mean = 0;
+        double variance = 0;
+        double growth = 1;
+        for (int year = 0; year < schedule.getYears(); year++) {
+            double drift = 1 + schedule.getMeans()[year] - ReturnSchedule.EXPENSE_RATIO;
+            double sd = schedule.getSds()[year];
+            // E[g(Z)] = (1 / sqrt(pi)) * integral of g(sqrt(2) x) e^(-x^2) dx, for standard normal Z
+            double yearMean = HERMITE.integrate(x -> logOf(drift + sd * Math.sqrt(2) * x)) / Math.sqrt(Math.PI);
+            double yearSquare = HERMITE.integrate(x -> Math.pow(logOf(drift + sd * Math.sqrt(2) * x), 2))
+                    / Math.sqrt(Math.PI);
+            mean += yearMean;
+            variance += yearSquare - yearMean * yearMean;
+            growth *= drift;
+        }
+        logMean = mean;
+        logSd = Math.sqrt(Math.max(0, variance));
+        meanGrowth = growth;
+    }
+
+    /**
+     * @return the log of a (positive) yearly growth factor, or of a tiny one if the return would wipe out the TDF
+     */
+    private static double logOf(double growthFactor) {
+        return Math.log(Math.max(growthFactor, 1e-12));
+    }
+
+    /**
+     * @return the mean of the log of the growth factor
+     */
+    public double getLogMean() { return logMean; }
+
+    /**
+     * @return the standard deviation of the log of the growth factor
+     */
+    public double getLogSd() { return logSd; }
+
+    /**
+     * @return the (exact) mean TDF balance at retirement
+     */
+    public double mean() {
+        return principal * meanGrowth;
+    }
+
+    /**
+     * @param percentile    a <code>Double</code> value in the open interval <em>(0,1)</em>
+     * @throws IllegalArgumentException if <code>percentile</code> is not in <em>(0,1)</em>
+     * @return              the approximate <em>100*percentile</em>th percentile TDF balance at retirement
+     */
+    public double percentile(double percentile) {
+        return principal * Math.exp(logMean + logSd * Statistics.inverseStandardNormal(percentile));
+    }
+
+    /**
+     * @param threshold a TDF balance, as a <code>double</code>
+     * @return          the approximate probability that the TDF balance at retirement is less than
+     *                  <code>threshold</code>
+     */
+    public double percentBelow(double threshold) {
+        if (threshold <= 0 || principal == 0) {
+            return principal == 0 && threshold > 0 ? 1 : 0;
+        }
+        if (logSd == 0) {
+            return Math.log(threshold / principal) > logMean ? 1 : 0;
+        }
+        return new NormalDistribution(logMean, logSd).cumulativeProbability(Math.log(threshold / principal));
+    }
+
+    /**
+     * @return  a string summarizing the approximate outcomes, in the same layout as
+     *          <code>MonteCarloSimulation.toString()</code>, intended to be printed to the console
+     */
+    public String toString() {
+        String str = "Quick preview (lognormal approximation, not a simulation):\n\n";
+        int width = 22;
+        String sf = "%" + width + "s";
+        str += String.format(sf, "withdrawal rate");
+        for (double rate : MonteCarloSimulation.WITHDRAWAL_RATES) {
+            str += String.format(sf, MonteCarloSimulation.formatRate(rate));
+        }
+        str += "\n";
+        for (int percent : new int[]{1, 5, 25, 50}) {
+            str += String.format(sf, MonteCarloSimulation.ordinal(percent) + " percentile");
+            for (double rate : MonteCarloSimulation.WITHDRAWAL_RATES) {
+                str += String.format(sf, String.format("%,d", Math.round(rate * percentile((double) percent / 100))));
+            }
+            str += "\n";
+        }
+        str += String.format(sf, "mean");
+        for (double rate : MonteCarloSimulation.WITHDRAWAL_RATES) {
+            str += String.format(sf, String.format("%,d", Math.round(rate * mean())));
+        }
+        str += "\n" + String.format(sf, "P(earning < TRS)");
+        for (double rate : MonteCarloSimulation.WITHDRAWAL_RATES) {
+            str += String.format("%" + (width - 1) + ".1f%%",
+                    100 * percentBelow(member.getTrsAccount().getNormalBenefit() / rate));
+        }
+        return str;
+    }
+
+    /**
+     * Measures this approximation against a simulation of the same member
+     * @param sim   a <code>MonteCarloSimulation</code> of <code>member</code>
+     * @return      a string reporting the relative error of each reported percentile and of the mean, and the
+     *              absolute error of each P(earning < TRS)
+     */
+    public String getErrorReport(MonteCarloSimulation sim) {
+        OutcomeSummary simulated = sim.getSummary();
+        String str = String.format("%-22s%16s%16s%12s%n", "TDF balance", "approximation", "simulation", "error");
+        for (int percent : new int[]{1, 5, 25, 50, 75, 95, 99}) {
+            double approximate = percentile((double) percent / 100);
+            double actual = simulated.percentile((double) percent / 100);
+            str += String.format("%-22s%,16.0f%,16.0f%+11.2f%%%n", MonteCarloSimulation.ordinal(percent) + " percentile", approximate, actual,
+                    100 * (approximate - actual) / actual);
+        }
+        str += String.format("%-22s%,16.0f%,16.0f%+11.2f%%%n", "mean", mean(), simulated.mean(),
+                100 * (mean() - simulated.mean()) / simulated.mean());
+        for (double rate : MonteCarloSimulation.WITHDRAWAL_RATES) {
+            double threshold = member.getTrsAccount().getNormalBenefit() / rate;
+            double approximate = percentBelow(threshold);
+            double actual = simulated.percentBelow(threshold);
+            str += String.format("%-22s%15.2f%%%15.2f%%%+9.2f pts%n",
+                    "P(< TRS) at " + MonteCarloSimulation.formatRate(rate), 100 * approximate, 100 * actual,
+                    100 * (approximate - actual));
+        }
+        return str;
+    }
+}
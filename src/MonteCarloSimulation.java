@@ -1,19 +1,69 @@
-import org.apache.commons.math3.distribution.NormalDistribution;
-
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.random.RandomGenerator;
+import java.util.random.RandomGenerator.SplittableGenerator;
+import java.util.stream.IntStream;
 
 public class MonteCarloSimulation {
+    // trials are simulated in blocks of this many; block b always uses random stream b
+    public static final int BLOCK_SIZE = 4096;
+    // an adaptive simulation checks whether it has converged after every batch of this many trials
+    public static final int ADAPTIVE_BATCH_SIZE = 4 * BLOCK_SIZE;
+    // quasi-random trials are split among this many independently scrambled replicates (BLOCK_SIZE is a multiple)
+    public static final int QUASI_RANDOM_REPLICATES = 16;
+    // importance-sampled trials shift their shocks this many standard deviations toward bad markets (the z-score
+    // of the 1st percentile)
+    public static final double IMPORTANCE_SHIFT = 2.326;
+    // stratified trials are split among this many equal-probability strata of the volatility-weighted sum of shocks
+    public static final int STRATA = 16;
+    // a Neyman-allocated simulation first runs this many pilot trials to estimate each stratum's spread
+    public static final int NEYMAN_PILOT_TRIALS = BLOCK_SIZE;
+    // a ReturnModel fills in the returns of this many trials at a time (so a chunk of returns stays in cache)
+    public static final int RETURN_MODEL_CHUNK_SIZE = 256;
+    // the model that Monte Carlo trials draw their (normal) annual returns from
+    private static final ReturnModel NORMAL_RETURNS = new NormalReturnModel();
+    // the withdrawal rates shown in the reports, by default
+    public static final double[] WITHDRAWAL_RATES = {.033, .04, .05};
+
     private int trials;
     private TrsMember member;
+    private RandomStreams randomStreams;
+    private SamplingMethod samplingMethod = SamplingMethod.MONTE_CARLO;
+    // for an adaptive simulation, whether it met its tolerances before reaching its trial cap (otherwise null)
+    private Boolean converged;
+    // for a simulation of a ReturnModel, that model (otherwise null)
+    private ReturnModel returnModel;
+    // the withdrawal rates shown in the reports (each is just a scale factor on the TDF balances, so there can be
+    // any number of them at no cost in memory or simulation time)
+    private double[] withdrawalRates = WITHDRAWAL_RATES.clone();
+    // if set, the reports also show the probability of running out of money by this age (see Decumulation)
+    private Integer ruinReportAge;
+    // if set, the reports also show the probability that the TDF balance lasts for the member's life
+    private MortalityTable mortalityTable;
+    // for a simulation run withSensitivities(), the sensitivities of its outcomes (otherwise null)
+    private Sensitivities sensitivities;
+    // the retirement phase at each withdrawal rate, built the first time it's needed
+    private final Map<Double, Decumulation> decumulations = new HashMap<>();
 
-    // these lists will contain one entry per trial, representing that trial's initial
-    // withdrawal amount at retirement at the given withdrawal rate (3.3%, 4%, or 5%)
+    // this array will contain one entry per trial (indexed by trial number), representing that
+    // trial's TDF balance at retirement. The initial withdrawal amount at any withdrawal rate
+    // (3.3%, 4%, or 5%) is just that balance scaled by the rate.
     // see documents in Resources/WithdrawalRates for more information
-    private List<Integer> withdrawalAt3pt3pct;
-    private List<Integer> withdrawalAt4pct;
-    private List<Integer> withdrawalAt5pct;
+    // (null for a streaming simulation, which never stores per-trial outcomes, or an off-heap one, which stores
+    // them in an OutcomeBuffer)
+    private double[] tdfBalances;
+    // for a simulation answered from a GrowthFactorCache, the cache's (shared) growth factors, from which
+    // tdfBalances is filled in only once the per-trial outcomes are needed (otherwise null)
+    private double[] cachedGrowthFactors;
+    // for importance sampling, each trial's likelihood ratio; for Neyman-allocated stratified sampling, the ratio of
+    // its stratum's probability to its stratum's share of the trials (otherwise null)
+    private double[] weights;
+    // for Neyman-allocated stratified sampling, each trial's stratum (otherwise null; a proportionally stratified
+    // trial i is in stratum i % STRATA)
+    private byte[] strata;
+    // summary of the TDF balances; for a stored simulation, built from tdfBalances the first time it's needed
+    private OutcomeSummary summary;
 
     /**
      * Class constructor
@@ -21,69 +71,1244 @@ public class MonteCarloSimulation {
      * @param member    a <code>TrsMember</code> instance
      */
     public MonteCarloSimulation(int trials, TrsMember member) {
+        this(trials, member, new RandomStreams(RandomStreams.newSeed()));
+    }
+
+    /**
+     * Class constructor
+     * @param trials    the (positive) number of trials in the simulation
+     * @param member    a <code>TrsMember</code> instance
+     * @param seed      the seed for the simulation's random number generator, as a <code>long</code>
+     */
+    public MonteCarloSimulation(int trials, TrsMember member, long seed) {
+        this(trials, member, new RandomStreams(seed));
+    }
+
+    /**
+     * Class constructor
+     * @param trials        the (positive) number of trials in the simulation
+     * @param member        a <code>TrsMember</code> instance
+     * @param randomStreams the source of randomness for the simulation
+     */
+    public MonteCarloSimulation(int trials, TrsMember member, RandomStreams randomStreams) {
+        this(trials, member, randomStreams, SamplingMethod.MONTE_CARLO);
+    }
+
+    /**
+     * Class constructor
+     * @param trials            the (positive) number of trials in the simulation
+     * @param member            a <code>TrsMember</code> instance
+     * @param randomStreams     the source of randomness for the simulation
+     * @param samplingMethod    how the trials' random annual returns are drawn
+     */
+    public MonteCarloSimulation(int trials, TrsMember member, RandomStreams randomStreams,
+                                SamplingMethod samplingMethod) {
+        this.trials = trials;
+        this.member = member;
+        this.randomStreams = randomStreams;
+        this.samplingMethod = samplingMethod;
+
+        ReturnSchedule schedule = new ReturnSchedule(member.getTrsAccount());
+        double[] growthFactors = new double[trials];
+        if (samplingMethod == SamplingMethod.IMPORTANCE) {
+            weights = new double[trials];
+        }
+        if (samplingMethod == SamplingMethod.NEYMAN_STRATIFIED) {
+            int[] allocation = neymanAllocation(schedule, trials, randomStreams);
+            strata = assignStrata(allocation, trials);
+            weights = new double[trials];
+            for (int trial = 0; trial < trials; trial++) {
+                weights[trial] = (double) trials / STRATA / allocation[strata[trial]];
+            }
+        }
+        simulateGrowthFactors(schedule, growthFactors, weights, strata, 0, trials, randomStreams, samplingMethod);
+        // (these growth factors belong to this simulation alone, so they're scaled into TDF balances in place)
+        int principal = member.getTrsAccount().getAccountBalanceAtResignation();
+        for (int trial = 0; trial < trials; trial++) {
+            growthFactors[trial] *= principal;
+        }
+        tdfBalances = growthFactors;
+    }
+
+    /**
+     * Class constructor, for a simulation whose growth factors have already been computed
+     * (see <code>GrowthFactorCache</code>)
+     * @param trials        the (positive) number of trials in the simulation
+     * @param member        a <code>TrsMember</code> instance
+     * @param randomStreams the source of randomness from which <code>growthFactors</code> were simulated
+     * @param growthFactors one growth factor (TDF balance at retirement per dollar invested at resignation) per trial
+     *                      (only the first <code>trials</code> entries are used)
+     */
+    MonteCarloSimulation(int trials, TrsMember member, RandomStreams randomStreams, double[] growthFactors) {
         this.trials = trials;
         this.member = member;
+        this.randomStreams = randomStreams;
+        setTdfBalances(growthFactors);
+    }
 
-        // these lists need to be concurrent safe
-        withdrawalAt3pt3pct = Collections.synchronizedList(new ArrayList<>());
-        withdrawalAt4pct = Collections.synchronizedList(new ArrayList<>());
-        withdrawalAt5pct = Collections.synchronizedList(new ArrayList<>());
+    /**
+     * Class constructor, for a simulation answered from a <code>GrowthFactorCache</code>: the summary is the cached
+     * (sorted) summary of the growth factors scaled by the member's principal, so nothing is copied or sorted, and
+     * the per-trial TDF balances are computed only if they're asked for
+     * @param trials                the (positive) number of trials in the simulation
+     * @param member                a <code>TrsMember</code> instance
+     * @param randomStreams         the source of randomness from which <code>growthFactors</code> were simulated
+     * @param growthFactors         one growth factor per trial, indexed by trial number (shared, and not modified)
+     * @param growthFactorSummary   a summary of <code>growthFactors</code> (shared)
+     */
+    MonteCarloSimulation(int trials, TrsMember member, RandomStreams randomStreams, double[] growthFactors,
+                         DistributionSummary growthFactorSummary) {
+        this.trials = trials;
+        this.member = member;
+        this.randomStreams = randomStreams;
+        cachedGrowthFactors = growthFactors;
         int principal = member.getTrsAccount().getAccountBalanceAtResignation();
+        // (a summary can only be scaled by a positive factor; otherwise it's built from the balances, as usual)
+        if (principal > 0) {
+            summary = growthFactorSummary.scaledBy(principal);
+        }
+    }
 
-        // each trial begins with in initial investment of principal
-        Collections.nCopies(trials, principal)
-                .stream()
-                .parallel()
-                .forEach(x -> { // for each trial in the simulation...
-                    double TdfBalance = principal;
-
-                    // TrsMember age at which TDF investment registers first year's return
-                    int firstYear = member.getTrsAccount().getCurrentAge() +
-                            member.getTrsAccount().getYearsTillResignation() + 1;
-                    int lastYear = Math.max(member.getTrsAccount().getRetirementAge(),
-                            member.getTrsAccount().getCurrentAge() + member.getTrsAccount().getYearsTillResignation());
-
-                    // loop through years from time of principal investment (plus 1) till retirement
-                    for (int age = firstYear; age <= lastYear; age++) {
-                        double stockAllocation = PiecewiseLinearFunction.VANGUARD_GLIDE_PATH.get(age);
-                        double mean = PiecewiseLinearFunction.HISTORICAL_MEAN_RETURNS.get(stockAllocation);
-                        double sd = PiecewiseLinearFunction.HISTORICAL_SD_RETURNS.get(stockAllocation);
-                        NormalDistribution normalPDF = new NormalDistribution(mean, sd);
-                        // Apply a randomly selected (according to normalPDF) annual return to the current balance
-                        // (As of 3/17/23, all Vanguard TDFs have a 0.08% expense ratio.)
-                        TdfBalance *= (1 + normalPDF.sample() - .0008);
-                        // Freeze any trials that end up with a non-positive TDF value at 0.
-                        if (TdfBalance <= 0) {
-                            TdfBalance = 0;
-                            break;
+    /**
+     * Sets each trial's outcome to the member's principal scaled by that trial's growth factor
+     * @param growthFactors one growth factor per trial (only the first <code>trials</code> entries are used)
+     */
+    private void setTdfBalances(double[] growthFactors) {
+        int principal = member.getTrsAccount().getAccountBalanceAtResignation();
+        tdfBalances = new double[trials];
+        for (int trial = 0; trial < trials; trial++) {
+            tdfBalances[trial] = principal * growthFactors[trial];
+        }
+    }
+
+    private MonteCarloSimulation(int trials, TrsMember member, RandomStreams randomStreams, OutcomeSummary summary) {
+        this.trials = trials;
+        this.member = member;
+        this.randomStreams = randomStreams;
+        this.summary = summary;
+    }
+
+    /**
+     * Class constructor, for a simulation whose annual returns are drawn from a <code>ReturnModel</code> (e.g.,
+     * fat-tailed, regime-switching, or bootstrapped returns)
+     * @param trials        the (positive) number of trials in the simulation
+     * @param member        a <code>TrsMember</code> instance
+     * @param randomStreams the source of randomness for the simulation
+     * @param returnModel   the model of annual returns
+     */
+    public MonteCarloSimulation(int trials, TrsMember member, RandomStreams randomStreams, ReturnModel returnModel) {
+        this(trials, member, randomStreams, simulateGrowthFactors(new ReturnSchedule(member.getTrsAccount()),
+                trials, randomStreams, returnModel));
+        this.returnModel = returnModel;
+    }
+
+    /**
+     * Runs a simulation whose annual returns are bootstrapped from history (see <code>BootstrapReturnModel</code>)
+     * @param trials            the (positive) number of trials in the simulation
+     * @param member            a <code>TrsMember</code> instance
+     * @param historicalReturns the historical series to resample
+     * @param blockLength       the (positive) number of consecutive historical years in each block, at most the
+     *                          length of the series
+     * @param randomStreams     the source of randomness for the simulation
+     * @throws IllegalArgumentException if <code>blockLength</code> is not positive or exceeds the series' length
+     * @return                  a <code>MonteCarloSimulation</code> of bootstrapped trials
+     */
+    public static MonteCarloSimulation bootstrap(int trials, TrsMember member, HistoricalReturns historicalReturns,
+                                                 int blockLength, RandomStreams randomStreams) {
+        return new MonteCarloSimulation(trials, member, randomStreams,
+                new BootstrapReturnModel(historicalReturns, blockLength));
+    }
+
+    /**
+     * Simulates a growth factor for each trial, with annual returns drawn from <code>returnModel</code>. Trials
+     * are split into blocks of <code>BLOCK_SIZE</code> as in <code>simulateGrowthFactors</code>, so the results
+     * don't depend on the number of cores; each block is simulated by <code>simulateBlock</code>.
+     * @param schedule      the years of investment and their return distributions
+     * @param trials        the (positive) number of trials
+     * @param randomStreams the source of randomness for the trials
+     * @param returnModel   the model of annual returns
+     * @return              an array (of size <code>trials</code>) of growth factors, indexed by trial number
+     */
+    public static double[] simulateGrowthFactors(ReturnSchedule schedule, int trials, RandomStreams randomStreams,
+                                                 ReturnModel returnModel) {
+        int years = schedule.getYears();
+        double[] growthFactors = new double[trials];
+        TrialScheduler.forEachBlock(0, (int) ((trials + (long) BLOCK_SIZE - 1) / BLOCK_SIZE),
+                () -> new double[RETURN_MODEL_CHUNK_SIZE * years], (returns, block) -> {
+            SplittableGenerator rng = randomStreams.stream(block);
+            int blockEnd = (int) Math.min(trials, (block + 1L) * BLOCK_SIZE);
+            int blockStart = block * BLOCK_SIZE;
+            simulateBlock(schedule, returnModel, returns, blockEnd - blockStart, rng, growthFactors, blockStart);
+        });
+        return growthFactors;
+    }
+
+    /**
+     * Simulates a block's trials (or, for the last block, what's left of them): <code>returnModel</code> fills in
+     * the returns of <code>RETURN_MODEL_CHUNK_SIZE</code> trials at a time, which <code>compound</code> then advances
+     * together, a year at a time. This is the path of every Monte Carlo trial (whose returns are drawn from a
+     * <code>NormalReturnModel</code>) as well as of every trial of a <code>ReturnModel</code>.
+     * @param schedule      the years of investment and their return distributions
+     * @param returnModel   the model of annual returns
+     * @param returns       scratch space for a chunk's returns, of length at least
+     *                      <code>RETURN_MODEL_CHUNK_SIZE * schedule.getYears()</code>
+     * @param trials        the number of trials in the block, at most <code>BLOCK_SIZE</code>
+     * @param rng           the block's source of randomness
+     * @param growthFactors the array to write the block's growth factors to
+     * @param offset        the index of the block's first trial in <code>growthFactors</code>
+     */
+    private static void simulateBlock(ReturnSchedule schedule, ReturnModel returnModel, double[] returns, int trials,
+                                      RandomGenerator rng, double[] growthFactors, int offset) {
+        int years = schedule.getYears();
+        for (int chunk = 0; chunk < trials; chunk += RETURN_MODEL_CHUNK_SIZE) {
+            int chunkTrials = Math.min(RETURN_MODEL_CHUNK_SIZE, trials - chunk);
+            returnModel.fillReturns(schedule, returns, chunkTrials, rng);
+            compound(returns, chunkTrials, years, growthFactors, offset + chunk);
+        }
+    }
+
+    /**
+     * The compounding kernel: advances a chunk of trials (the lanes) together, one year at a time. The inner loop
+     * runs over contiguous, independent trials, with the zero floor as a select rather than an early exit (a trial
+     * whose balance has reached 0 is clamped there, and stays there), so it's the shape a SIMD compiler can
+     * vectorize, and otherwise still overlaps the lanes' multiplications. The growth factors are exactly those of
+     * compounding each trial on its own and stopping at 0.
+     * @param returns       a chunk's annual returns (before expenses), laid out as by
+     *                      <code>ReturnModel.fillReturns</code>
+     * @param trials        the number of trials in the chunk
+     * @param years         the number of years
+     * @param growthFactors the array to write the chunk's growth factors to (of a dollar invested for those years,
+     *                      or 0 if the balance ever reaches 0)
+     * @param offset        the index of the chunk's first trial in <code>growthFactors</code>
+     */
+    static void compound(double[] returns, int trials, int years, double[] growthFactors, int offset) {
+        // each trial begins with an initial investment of one dollar
+        Arrays.fill(growthFactors, offset, offset + trials, 1);
+        for (int year = 0; year < years; year++) {
+            int yearStart = year * trials;
+            for (int trial = 0; trial < trials; trial++) {
+                // Freeze any trials that end up with a non-positive TDF value at 0.
+                double growthFactor = growthFactors[offset + trial]
+                        * (1 + returns[yearStart + trial] - ReturnSchedule.EXPENSE_RATIO);
+                growthFactors[offset + trial] = growthFactor > 0 ? growthFactor : 0;
+            }
+        }
+    }
+
+    /**
+     * Runs a simulation that also records, in the same pass over the trials, what's needed to estimate the
+     * sensitivities of its outcomes to its main assumptions (see <code>Sensitivities</code>): each trial's pathwise
+     * derivatives with respect to a shift of every year's mean return and of every year's standard deviation, and
+     * the scores (derivatives of the log density of the trial's returns) with respect to the same shifts. The trials
+     * themselves are the same as those of a <code>MONTE_CARLO</code> simulation with the same random streams.
+     * @param trials        the (positive) number of trials in the simulation
+     * @param member        a <code>TrsMember</code> instance
+     * @param randomStreams the source of randomness for the simulation
+     * @return              a <code>MonteCarloSimulation</code> whose <code>getSensitivities()</code> is set
+     */
+    public static MonteCarloSimulation withSensitivities(int trials, TrsMember member, RandomStreams randomStreams) {
+        ReturnSchedule schedule = new ReturnSchedule(member.getTrsAccount());
+        double[] means = schedule.getMeans();
+        double[] sds = schedule.getSds();
+        double[] inverseSds = Arrays.stream(sds).map(sd -> 1 / sd).toArray();
+        double[] growthFactors = new double[trials];
+        double[] meanDerivatives = new double[trials];
+        double[] volatilityDerivatives = new double[trials];
+        double[] meanScores = new double[trials];
+        double[] volatilityScores = new double[trials];
+        TrialScheduler.forEachBlock(0, (int) ((trials + (long) BLOCK_SIZE - 1) / BLOCK_SIZE), block -> {
+            SplittableGenerator rng = randomStreams.stream(block);
+            int blockEnd = (int) Math.min(trials, (block + 1L) * BLOCK_SIZE);
+            for (int trial = block * BLOCK_SIZE; trial < blockEnd; trial++) {
+                double growthFactor = 1;
+                // d(log growth factor)/d(shift), and d(log density)/d(shift), summed over the years
+                double meanLogDerivative = 0;
+                double volatilityLogDerivative = 0;
+                double meanScore = 0;
+                double volatilityScore = 0;
+                for (int year = 0; year < means.length; year++) {
+                    double z = ZigguratNormal.sample(rng);
+                    // a frozen trial stays at 0 whatever the assumptions (but, like every Monte Carlo trial, still
+                    // draws the rest of its returns)
+                    if (growthFactor == 0) {
+                        continue;
+                    }
+                    // (the return is formed as NormalReturnModel forms it, and applied as compound() applies it)
+                    double factor = 1 + (means[year] + sds[year] * z) - ReturnSchedule.EXPENSE_RATIO;
+                    growthFactor *= factor;
+                    if (growthFactor <= 0) {
+                        growthFactor = 0;
+                        continue;
+                    }
+                    meanLogDerivative += 1 / factor;
+                    volatilityLogDerivative += z / factor;
+                    meanScore += z * inverseSds[year];
+                    volatilityScore += (z * z - 1) * inverseSds[year];
+                }
+                growthFactors[trial] = growthFactor;
+                meanDerivatives[trial] = growthFactor * meanLogDerivative;
+                volatilityDerivatives[trial] = growthFactor * volatilityLogDerivative;
+                meanScores[trial] = meanScore;
+                volatilityScores[trial] = volatilityScore;
+            }
+        });
+
+        MonteCarloSimulation sim = new MonteCarloSimulation(trials, member, randomStreams, growthFactors);
+        int principal = member.getTrsAccount().getAccountBalanceAtResignation();
+        for (int trial = 0; trial < trials; trial++) {
+            meanDerivatives[trial] *= principal;
+            volatilityDerivatives[trial] *= principal;
+        }
+        double principalElasticity = principal > 0
+                ? member.getTrsAccount().getAccountBalanceAtResignationInterestDerivative() / principal : 0;
+        sim.sensitivities = new Sensitivities(sim.tdfBalances, meanDerivatives, volatilityDerivatives, meanScores,
+                volatilityScores, principalElasticity);
+        return sim;
+    }
+
+    /**
+     * Runs a simulation in streaming mode: each trial's outcome is fed into mergeable accumulators (mean and
+     * variance, a <code>QuantileSketch</code>, min and max, and exact counts below the TRS annuity at each of
+     * <code>WITHDRAWAL_RATES</code>) rather than stored, so memory stays (essentially) constant as
+     * <code>trials</code> grows. See <code>StreamingSummary</code> for error bounds. The per-trial outcomes
+     * (<code>getTdfBalances()</code>, <code>getWithdrawals()</code>) are not available.
+     * @param trials        the (positive) number of trials in the simulation
+     * @param member        a <code>TrsMember</code> instance
+     * @param randomStreams the source of randomness for the simulation
+     * @return              a <code>MonteCarloSimulation</code> whose summary is a <code>StreamingSummary</code>
+     */
+    public static MonteCarloSimulation streaming(int trials, TrsMember member, RandomStreams randomStreams) {
+        int principal = member.getTrsAccount().getAccountBalanceAtResignation();
+        ReturnSchedule schedule = new ReturnSchedule(member.getTrsAccount());
+
+        // outcomes below these TDF balances are counted exactly
+        double[] thresholds = new double[WITHDRAWAL_RATES.length];
+        for (int i = 0; i < WITHDRAWAL_RATES.length; i++) {
+            thresholds[i] = member.getTrsAccount().getNormalBenefit() / WITHDRAWAL_RATES[i];
+        }
+
+        // Each block's mean and sum of squared deviations (Welford) go to that block's index, and are merged in
+        // block order at the end, so the mean and sd don't depend on how many cores ran the blocks. (These take
+        // 16 bytes per block, i.e. 16 bytes per BLOCK_SIZE trials.) Everything else merges exactly in any order.
+        int blocks = (int) ((trials + (long) BLOCK_SIZE - 1) / BLOCK_SIZE);
+        double[] blockMeans = new double[blocks];
+        double[] blockM2s = new double[blocks];
+        // (each task simulates its blocks' growth factors in its own workspace, and feeds them to its accumulator)
+        StreamingSummary.Accumulator accumulator = TrialScheduler.collectBlocks(0, blocks,
+                () -> new StreamingTask(new StreamingSummary.Accumulator(thresholds), new Workspace(schedule)),
+                (task, block) -> {
+                    SplittableGenerator rng = randomStreams.stream(block);
+                    double[] growthFactors = task.workspace().growthFactors;
+                    int blockTrials = (int) Math.min(trials, (block + 1L) * BLOCK_SIZE) - block * BLOCK_SIZE;
+                    simulateBlock(schedule, NORMAL_RETURNS, task.workspace().returns, blockTrials, rng, growthFactors,
+                            0);
+                    double mean = 0;
+                    double m2 = 0;
+                    for (int i = 0; i < blockTrials; i++) {
+                        double tdfBalance = principal * growthFactors[i];
+                        task.accumulator().add(tdfBalance);
+                        double delta = tdfBalance - mean;
+                        mean += delta / (i + 1);
+                        m2 += delta * (tdfBalance - mean);
+                    }
+                    blockMeans[block] = mean;
+                    blockM2s[block] = m2;
+                },
+                (task, other) -> task.accumulator().merge(other.accumulator())).accumulator();
+
+        double[] meanAndSd = mergeBlockMoments(blockMeans, blockM2s, trials);
+        return new MonteCarloSimulation(trials, member, randomStreams,
+                new StreamingSummary(accumulator, meanAndSd[0], meanAndSd[1]));
+    }
+
+    /**
+     * Merges the means and sums of squared deviations of the blocks of a simulation (Chan et al.), in block order,
+     * so the result doesn't depend on how many cores ran the blocks
+     * @param blockMeans    the mean of each block's outcomes
+     * @param blockM2s      the sum of squared deviations from the mean of each block's outcomes
+     * @param trials        the number of trials in the simulation
+     * @return              the mean and the corrected sample standard deviation of all the outcomes
+     */
+    private static double[] mergeBlockMoments(double[] blockMeans, double[] blockM2s, int trials) {
+        double mean = 0;
+        double m2 = 0;
+        long n = 0;
+        for (int block = 0; block < blockMeans.length; block++) {
+            long blockN = Math.min(trials, (long) (block + 1) * BLOCK_SIZE) - (long) block * BLOCK_SIZE;
+            double delta = blockMeans[block] - mean;
+            long mergedN = n + blockN;
+            mean += delta * blockN / mergedN;
+            m2 += blockM2s[block] + delta * delta * n * blockN / mergedN;
+            n = mergedN;
+        }
+        return new double[] {mean, n > 1 ? Math.sqrt(m2 / (n - 1)) : 0};
+    }
+
+    /**
+     * Runs a simulation that keeps its trial outcomes only in a compact encoding (see <code>QuantizedSummary</code>):
+     * 4 bytes per trial as <code>float</code>s, or 2 bytes per trial as 16-bit log codes, rather than the 16 bytes
+     * per trial of a simulation's TDF balances plus their sorted copy. The trials are exactly those of a Monte Carlo
+     * simulation with the same random streams; the mean and standard deviation are exact, and percentiles are
+     * within the encoding's relative error bound. As for a streaming simulation, the per-trial outcomes
+     * (<code>getTdfBalances()</code>, <code>getWithdrawals()</code>) are not available.
+     * @param trials        the (positive) number of trials in the simulation
+     * @param member        a <code>TrsMember</code> instance
+     * @param randomStreams the source of randomness for the simulation
+     * @param encoding      how to store the outcomes
+     * @return              a <code>MonteCarloSimulation</code> whose summary is a <code>QuantizedSummary</code>
+     */
+    public static MonteCarloSimulation quantized(int trials, TrsMember member, RandomStreams randomStreams,
+                                                 QuantizedSummary.Encoding encoding) {
+        int principal = member.getTrsAccount().getAccountBalanceAtResignation();
+        ReturnSchedule schedule = new ReturnSchedule(member.getTrsAccount());
+
+        // each trial's outcome is encoded as soon as it's simulated, and its block's mean and sum of squared
+        // deviations (Welford) are merged in block order at the end, as in streaming mode
+        QuantizedSummary.Store store = new QuantizedSummary.Store(encoding, trials);
+        int blocks = (int) ((trials + (long) BLOCK_SIZE - 1) / BLOCK_SIZE);
+        double[] blockMeans = new double[blocks];
+        double[] blockM2s = new double[blocks];
+        TrialScheduler.forEachBlock(0, blocks, () -> new Workspace(schedule), (workspace, block) -> {
+            SplittableGenerator rng = randomStreams.stream(block);
+            double[] growthFactors = workspace.growthFactors;
+            int blockStart = block * BLOCK_SIZE;
+            int blockTrials = (int) Math.min(trials, (block + 1L) * BLOCK_SIZE) - blockStart;
+            simulateBlock(schedule, NORMAL_RETURNS, workspace.returns, blockTrials, rng, growthFactors, 0);
+            double mean = 0;
+            double m2 = 0;
+            for (int i = 0; i < blockTrials; i++) {
+                double tdfBalance = principal * growthFactors[i];
+                store.set(blockStart + i, tdfBalance);
+                double delta = tdfBalance - mean;
+                mean += delta / (i + 1);
+                m2 += delta * (tdfBalance - mean);
+            }
+            blockMeans[block] = mean;
+            blockM2s[block] = m2;
+        });
+
+        double[] meanAndSd = mergeBlockMoments(blockMeans, blockM2s, trials);
+        return new MonteCarloSimulation(trials, member, randomStreams,
+                new QuantizedSummary(store, meanAndSd[0], meanAndSd[1]));
+    }
+
+    /**
+     * Runs a simulation whose trial outcomes are stored outside the Java heap, in an <code>OutcomeBuffer</code>, so
+     * the number of trials is limited by memory or disk rather than by the heap: e.g., a billion trials backed by a
+     * temporary file,
+     * <pre>
+     *     MonteCarloSimulation.offHeap(1_000_000_000, member, randomStreams, OutcomeBuffer.mapTempFile(1_000_000_000))
+     * </pre>
+     * The trials are exactly those of a Monte Carlo simulation with the same random streams, and the summary (an
+     * <code>OffHeapSummary</code>) is exact; but as for a streaming simulation, the per-trial outcomes aren't
+     * available through <code>getTdfBalances()</code> or <code>getWithdrawals()</code> (they're in the buffer).
+     * @param trials        the (positive) number of trials in the simulation
+     * @param member        a <code>TrsMember</code> instance
+     * @param randomStreams the source of randomness for the simulation
+     * @param buffer        the buffer to store each trial's TDF balance at retirement in (at the trial's index), of
+     *                      size <code>trials</code>
+     * @throws IllegalArgumentException if <code>buffer</code>'s size isn't <code>trials</code>
+     * @return              a <code>MonteCarloSimulation</code> whose summary is an <code>OffHeapSummary</code>
+     */
+    public static MonteCarloSimulation offHeap(int trials, TrsMember member, RandomStreams randomStreams,
+                                               OutcomeBuffer buffer) {
+        if (buffer.size() != trials) throw new IllegalArgumentException("buffer's size must be trials");
+        int principal = member.getTrsAccount().getAccountBalanceAtResignation();
+        ReturnSchedule schedule = new ReturnSchedule(member.getTrsAccount());
+        // each block's outcomes are simulated into a task's scratch array, and then copied into the buffer at once
+        TrialScheduler.forEachBlock(0, (int) ((trials + (long) BLOCK_SIZE - 1) / BLOCK_SIZE),
+                () -> new Workspace(schedule), (workspace, block) -> {
+            SplittableGenerator rng = randomStreams.stream(block);
+            double[] outcomes = workspace.growthFactors;
+            int blockStart = block * BLOCK_SIZE;
+            int blockTrials = Math.min(BLOCK_SIZE, trials - blockStart);
+            simulateBlock(schedule, NORMAL_RETURNS, workspace.returns, blockTrials, rng, outcomes, 0);
+            for (int i = 0; i < blockTrials; i++) {
+                outcomes[i] *= principal;
+            }
+            buffer.put(blockStart, outcomes, blockTrials);
+        });
+        return new MonteCarloSimulation(trials, member, randomStreams, new OffHeapSummary(buffer));
+    }
+
+    /**
+     * Runs a simulation in adaptive mode: trials are run in batches of <code>ADAPTIVE_BATCH_SIZE</code> until both
+     * <ul>
+     *     <li>the 99% margin of error of the mean is at most <code>meanTolerance</code> times the mean, and</li>
+     *     <li>the 99% (Wilson score) margin of error of P(earning < TRS), at each of <code>WITHDRAWAL_RATES</code>,
+     *     is at most <code>probabilityTolerance</code>,</li>
+     * </ul>
+     * or until <code>maxTrials</code> trials have run. The outcomes are identical to those of a
+     * <code>MonteCarloSimulation</code> with the same seed and the final number of trials.
+     * @param member                a <code>TrsMember</code> instance
+     * @param meanTolerance         the largest acceptable margin of error of the mean, relative to the mean
+     *                              (e.g., 0.01 for 1%)
+     * @param probabilityTolerance  the largest acceptable margin of error of each P(earning < TRS)
+     *                              (e.g., 0.005 for +/- 0.5 percentage points)
+     * @param maxTrials             the (positive) largest number of trials to run
+     * @param randomStreams         the source of randomness for the simulation
+     * @return                      a <code>MonteCarloSimulation</code> with as many trials as were needed
+     */
+    public static MonteCarloSimulation adaptive(TrsMember member, double meanTolerance, double probabilityTolerance,
+                                                int maxTrials, RandomStreams randomStreams) {
+        double confidence = .99;
+        int principal = member.getTrsAccount().getAccountBalanceAtResignation();
+        ReturnSchedule schedule = new ReturnSchedule(member.getTrsAccount());
+        double[] thresholds = new double[WITHDRAWAL_RATES.length];
+        for (int i = 0; i < WITHDRAWAL_RATES.length; i++) {
+            thresholds[i] = member.getTrsAccount().getNormalBenefit() / WITHDRAWAL_RATES[i];
+        }
+
+        double[] growthFactors = new double[Math.min(maxTrials, ADAPTIVE_BATCH_SIZE)];
+        long[] countsBelow = new long[thresholds.length];
+        double mean = 0;
+        double m2 = 0;
+        int trials = 0;
+        boolean converged = false;
+        while (!converged && trials < maxTrials) {
+            // run the next batch (growing the array geometrically, as needed)
+            int batchEnd = (int) Math.min(maxTrials, (long) trials + ADAPTIVE_BATCH_SIZE);
+            if (batchEnd > growthFactors.length) {
+                growthFactors = Arrays.copyOf(growthFactors,
+                        (int) Math.min(maxTrials, Math.max(batchEnd, 2L * growthFactors.length)));
+            }
+            simulateGrowthFactors(schedule, growthFactors, null, null, trials, batchEnd, randomStreams,
+                    SamplingMethod.MONTE_CARLO);
+
+            // update the running mean and variance (Welford) and the counts below each threshold
+            for (int trial = trials; trial < batchEnd; trial++) {
+                double tdfBalance = principal * growthFactors[trial];
+                double delta = tdfBalance - mean;
+                mean += delta / (trial + 1);
+                m2 += delta * (tdfBalance - mean);
+                for (int i = 0; i < thresholds.length; i++) {
+                    if (tdfBalance < thresholds[i]) {
+                        countsBelow[i]++;
+                    }
+                }
+            }
+            trials = batchEnd;
+
+            // check the stopping rule
+            double sd = trials > 1 ? Math.sqrt(m2 / (trials - 1)) : 0;
+            converged = Statistics.getZ(confidence) * sd / Math.sqrt(trials) <= meanTolerance * mean;
+            for (long countBelow : countsBelow) {
+                converged &= Statistics.getBinomialMarginOfError((double) countBelow / trials, trials, confidence)
+                        <= probabilityTolerance;
+            }
+        }
+
+        MonteCarloSimulation sim = new MonteCarloSimulation(trials, member, randomStreams, growthFactors);
+        sim.converged = converged;
+        return sim;
+    }
+
+    /**
+     * Simulates the growth of one dollar invested in a TDF, once per trial. The random part of each trial's outcome
+     * depends only on <code>schedule</code> (not on the member's salary or balance), so a member's TDF balance at
+     * retirement is their account balance at resignation times the trial's growth factor.
+     * @param schedule      the annual return distributions from resignation till retirement
+     * @param trials        the (positive) number of trials in the simulation
+     * @param randomStreams the source of randomness for the simulation
+     * @return              an array (of size <code>trials</code>) of growth factors, indexed by trial number
+     */
+    public static double[] simulateGrowthFactors(ReturnSchedule schedule, int trials, RandomStreams randomStreams) {
+        return simulateGrowthFactors(schedule, trials, randomStreams, SamplingMethod.MONTE_CARLO);
+    }
+
+    /**
+     * @param schedule          the annual return distributions from resignation till retirement
+     * @param trials            the (positive) number of trials in the simulation
+     * @param randomStreams     the source of randomness for the simulation
+     * @param samplingMethod    how the trials' random annual returns are drawn
+     * @throws IllegalArgumentException if <code>samplingMethod</code> is <code>IMPORTANCE</code> or
+     *                                  <code>NEYMAN_STRATIFIED</code>, whose growth factors are meaningless without
+     *                                  their weights
+     * @return  an array (of size <code>trials</code>) of growth factors, indexed by trial number
+     */
+    public static double[] simulateGrowthFactors(ReturnSchedule schedule, int trials, RandomStreams randomStreams,
+                                                 SamplingMethod samplingMethod) {
+        if (samplingMethod == SamplingMethod.IMPORTANCE || samplingMethod == SamplingMethod.NEYMAN_STRATIFIED) {
+            throw new IllegalArgumentException(samplingMethod + " growth factors need their weights");
+        }
+        double[] growthFactors = new double[trials];
+        simulateGrowthFactors(schedule, growthFactors, null, null, 0, trials, randomStreams, samplingMethod);
+        return growthFactors;
+    }
+
+    /**
+     * Simulates trials <code>fromTrial</code> (inclusive) through <code>toTrial</code> (exclusive), writing each
+     * trial's growth factor to its index of <code>growthFactors</code>. Since trial i's outcome depends only on i
+     * (and the seed), simulating a range of trials gives the same outcomes as simulating them all at once.
+     * @param schedule      the annual return distributions from resignation till retirement
+     * @param growthFactors an array of length at least <code>toTrial</code>
+     * @param weights       for importance sampling, an array of length at least <code>toTrial</code> to which each
+     *                      trial's likelihood ratio is written (otherwise ignored, and may be <code>null</code>)
+     * @param strata        for Neyman-allocated stratified sampling, each trial's stratum (otherwise ignored, and may
+     *                      be <code>null</code>)
+     * @param fromTrial     the first trial to simulate, which must be a multiple of <code>BLOCK_SIZE</code>
+     * @param toTrial       one more than the last trial to simulate
+     * @param randomStreams the source of randomness for the simulation
+     * @param samplingMethod    how the trials' random annual returns are drawn
+     * @throws IllegalArgumentException if <code>fromTrial</code> is not a multiple of <code>BLOCK_SIZE</code>
+     */
+    static void simulateGrowthFactors(ReturnSchedule schedule, double[] growthFactors, double[] weights,
+                                      byte[] strata, int fromTrial, int toTrial, RandomStreams randomStreams,
+                                      SamplingMethod samplingMethod) {
+        if (fromTrial % BLOCK_SIZE != 0) throw new IllegalArgumentException("fromTrial must be a multiple of BLOCK_SIZE");
+        double[] means = schedule.getMeans();
+        double[] sds = schedule.getSds();
+
+        // Split the trials into fixed-size blocks. Trial i always belongs to block i / BLOCK_SIZE, which always
+        // draws from the random stream derived from (seed, block), and writes its outcome to index i. So the
+        // outcomes (and every statistic computed from them) are identical no matter how many cores run the blocks.
+        // (Each trial writes only to its own index, so no locking is needed.)
+        int fromBlock = fromTrial / BLOCK_SIZE;
+        int toBlock = (int) ((toTrial + (long) BLOCK_SIZE - 1) / BLOCK_SIZE);
+
+        // for quasi-random sampling: the replicates' scrambled sequences (replicate r is scrambled with stream
+        // -(r+1), so as not to reuse a block's stream), and the rotation that points their first coordinate along
+        // the volatility-weighted sum of the years' shocks
+        SobolSequence[] sequences = new SobolSequence[0];
+        double[] householder = new double[0];
+        if (samplingMethod == SamplingMethod.QUASI_RANDOM) {
+            sequences = new SobolSequence[QUASI_RANDOM_REPLICATES];
+            for (int replicate = 0; replicate < QUASI_RANDOM_REPLICATES; replicate++) {
+                sequences[replicate] = new SobolSequence(means.length, randomStreams.stream(-(replicate + 1)));
+            }
+            householder = householderVector(sds);
+        }
+        SobolSequence[] replicates = sequences;
+        double[] rotation = householder;
+
+        // for importance sampling: the shift of the shocks toward bad markets, -IMPORTANCE_SHIFT standard deviations
+        // along the volatility-weighted direction, and half its squared length
+        double[] shift = new double[means.length];
+        double norm = Math.sqrt(Arrays.stream(sds).map(sd -> sd * sd).sum());
+        for (int year = 0; year < shift.length && norm > 0; year++) {
+            shift[year] = -IMPORTANCE_SHIFT * sds[year] / norm;
+        }
+        double halfShiftSquared = norm > 0 ? IMPORTANCE_SHIFT * IMPORTANCE_SHIFT / 2 : 0;
+
+        // for stratified sampling: the (unit) volatility-weighted direction whose component is stratified
+        double[] direction = new double[means.length];
+        for (int year = 0; year < direction.length && norm > 0; year++) {
+            direction[year] = sds[year] / norm;
+        }
+
+        TrialScheduler.forEachBlock(fromBlock, toBlock, () -> new Workspace(schedule, replicates),
+                (workspace, block) -> {
+            SplittableGenerator rng = randomStreams.stream(block);
+            double[] shocks = workspace.shocks;
+            int blockStart = block * BLOCK_SIZE;
+            int blockEnd = (int) Math.min(toTrial, (block + 1L) * BLOCK_SIZE);
+            switch (samplingMethod) {
+                case MONTE_CARLO -> {
+                    // draw a chunk of trials' normal returns at a time, and compound them across the chunk
+                    simulateBlock(schedule, NORMAL_RETURNS, workspace.returns, blockEnd - blockStart, rng,
+                            growthFactors, blockStart);
+                }
+                case ANTITHETIC -> {
+                    // for each pair of trials in the block (BLOCK_SIZE is even, so pairs never span blocks)...
+                    for (int trial = blockStart; trial < blockEnd; trial += 2) {
+                        for (int year = 0; year < shocks.length; year++) {
+                            shocks[year] = ZigguratNormal.sample(rng);
+                        }
+                        growthFactors[trial] = growthFactor(means, sds, shocks, 1);
+                        if (trial + 1 < blockEnd) {
+                            growthFactors[trial + 1] = growthFactor(means, sds, shocks, -1);
+                        }
+                    }
+                }
+                case IMPORTANCE -> {
+                    // even trials draw unshifted shocks, odd trials shifted ones; either way, the trial's
+                    // weight is the ratio of the true density to the (half-and-half) mixture density
+                    for (int trial = blockStart; trial < blockEnd; trial++) {
+                        double dot = 0;
+                        for (int year = 0; year < shocks.length; year++) {
+                            shocks[year] = ZigguratNormal.sample(rng) + (trial % 2 == 1 ? shift[year] : 0);
+                            dot += shift[year] * shocks[year];
+                        }
+                        growthFactors[trial] = growthFactor(means, sds, shocks, 1);
+                        weights[trial] = 1 / (0.5 + 0.5 * Math.exp(dot - halfShiftSquared));
+                    }
+                }
+                case STRATIFIED, NEYMAN_STRATIFIED -> {
+                    // draw independent shocks, then replace their component along the direction with one
+                    // drawn from the trial's stratum of the standard normal distribution; the result is
+                    // exactly a standard normal vector conditioned on that component lying in the stratum
+                    for (int trial = blockStart; trial < blockEnd; trial++) {
+                        int stratum = strata != null ? strata[trial] : trial % STRATA;
+                        double dot = 0;
+                        for (int year = 0; year < shocks.length; year++) {
+                            shocks[year] = ZigguratNormal.sample(rng);
+                            dot += direction[year] * shocks[year];
+                        }
+                        double uniform;
+                        do {
+                            uniform = rng.nextDouble();
+                        } while (uniform == 0);
+                        double component = Statistics.inverseStandardNormal((stratum + uniform) / STRATA);
+                        for (int year = 0; year < shocks.length; year++) {
+                            shocks[year] += (component - dot) * direction[year];
+                        }
+                        growthFactors[trial] = growthFactor(means, sds, shocks, 1);
+                    }
+                }
+                case QUASI_RANDOM -> {
+                    double[] uniforms = workspace.uniforms;
+                    // trial i is point i / QUASI_RANDOM_REPLICATES of replicate i % QUASI_RANDOM_REPLICATES
+                    // (stepping through the block by offset, which can't overflow as the trial number could)
+                    for (int replicate = 0; replicate < QUASI_RANDOM_REPLICATES; replicate++) {
+                        SobolSequence.Cursor cursor = workspace.cursors[replicate];
+                        cursor.seek(blockStart / QUASI_RANDOM_REPLICATES);
+                        for (int offset = replicate; offset < blockEnd - blockStart;
+                             offset += QUASI_RANDOM_REPLICATES) {
+                            int trial = blockStart + offset;
+                            cursor.next(uniforms);
+                            for (int year = 0; year < shocks.length; year++) {
+                                shocks[year] = Statistics.inverseStandardNormal(uniforms[year]);
+                            }
+                            reflect(shocks, rotation);
+                            growthFactors[trial] = growthFactor(means, sds, shocks, 1);
                         }
                     }
+                }
+            }
+        });
+    }
+
+    /**
+     * The scratch space of one task of the simulation kernel (see <code>TrialScheduler.forEachBlock</code>), reused
+     * for each trial of its blocks, so that simulating a trial allocates nothing
+     */
+    private static final class Workspace {
+        final double[] shocks;
+        final double[] uniforms;
+        final SobolSequence.Cursor[] cursors;
+        // a chunk's annual returns (see simulateBlock)
+        final double[] returns;
+        // a block's growth factors, for the modes that use each trial's outcome as soon as it's simulated, rather
+        // than storing them all (streaming, quantized, and off-heap)
+        final double[] growthFactors;
+
+        /**
+         * @param schedule  the years of investment
+         */
+        Workspace(ReturnSchedule schedule) {
+            this(schedule, new SobolSequence[0]);
+        }
+
+        /**
+         * @param schedule      the years of investment
+         * @param replicates    the quasi-random replicates (empty, unless sampling quasi-randomly)
+         */
+        Workspace(ReturnSchedule schedule, SobolSequence[] replicates) {
+            int years = schedule.getYears();
+            shocks = new double[years];
+            uniforms = new double[years];
+            cursors = new SobolSequence.Cursor[replicates.length];
+            for (int replicate = 0; replicate < replicates.length; replicate++) {
+                cursors[replicate] = replicates[replicate].new Cursor(0);
+            }
+            returns = new double[RETURN_MODEL_CHUNK_SIZE * years];
+            growthFactors = new double[BLOCK_SIZE];
+        }
+    }
+
+    /**
+     * The state of one task of a streaming simulation: its accumulator, and its workspace
+     */
+    private record StreamingTask(StreamingSummary.Accumulator accumulator, Workspace workspace) {}
+
+    /**
+     * Runs <code>NEYMAN_PILOT_TRIALS</code> proportionally stratified pilot trials (from streams independent of the
+     * simulation's own) and allocates <code>trials</code> among the strata in proportion to each stratum's standard
+     * deviation of growth factors, which minimizes the variance of the stratified mean
+     * @param schedule      the return schedule to simulate
+     * @param trials        the number of trials to allocate
+     * @param randomStreams the simulation's source of randomness
+     * @return              the number of trials allocated to each stratum (at least 2 apiece, if there are enough
+     *                      trials), summing to <code>trials</code>
+     */
+    private static int[] neymanAllocation(ReturnSchedule schedule, int trials, RandomStreams randomStreams) {
+        RandomStreams pilotStreams = new RandomStreams(randomStreams.getAlgorithm(),
+                randomStreams.stream(Long.MIN_VALUE).nextLong());
+        double[] pilot = simulateGrowthFactors(schedule, NEYMAN_PILOT_TRIALS, pilotStreams, SamplingMethod.STRATIFIED);
+        double[] stratumSds = new double[STRATA];
+        for (int stratum = 0; stratum < STRATA; stratum++) {
+            int finalStratum = stratum;
+            stratumSds[stratum] = Statistics.sd(IntStream.range(0, pilot.length)
+                    .filter(trial -> trial % STRATA == finalStratum)
+                    .mapToDouble(trial -> pilot[trial])
+                    .toArray());
+        }
+        double totalSd = Arrays.stream(stratumSds).sum();
+
+        // every stratum gets its minimum, and the rest are shared out by largest remainder
+        int minimum = trials >= 2 * STRATA ? 2 : trials / STRATA;
+        int[] allocation = new int[STRATA];
+        double[] remainders = new double[STRATA];
+        int spare = trials - minimum * STRATA;
+        int allocated = 0;
+        for (int stratum = 0; stratum < STRATA; stratum++) {
+            double share = spare * (totalSd > 0 ? stratumSds[stratum] / totalSd : 1.0 / STRATA);
+            allocation[stratum] = minimum + (int) share;
+            remainders[stratum] = share - (int) share;
+            allocated += allocation[stratum];
+        }
+        while (allocated < trials) {
+            int largest = 0;
+            for (int stratum = 1; stratum < STRATA; stratum++) {
+                if (remainders[stratum] > remainders[largest]) largest = stratum;
+            }
+            allocation[largest]++;
+            remainders[largest] = -1;
+            allocated++;
+        }
+        return allocation;
+    }
+
+    /**
+     * Interleaves the strata among the trials, so that every stretch of trials (in particular, every block) holds
+     * about its share of each stratum: each trial goes to the stratum furthest behind its allocation
+     * @param allocation    the number of trials in each stratum, summing to <code>trials</code>
+     * @param trials        the number of trials
+     * @return              each trial's stratum, indexed by trial number
+     */
+    private static byte[] assignStrata(int[] allocation, int trials) {
+        byte[] strata = new byte[trials];
+        long[] assigned = new long[STRATA];
+        for (int trial = 0; trial < trials; trial++) {
+            int furthestBehind = 0;
+            long largestDeficit = Long.MIN_VALUE;
+            for (int stratum = 0; stratum < STRATA; stratum++) {
+                // (stratum's target after this trial - stratum's count so far) * trials
+                long deficit = (long) allocation[stratum] * (trial + 1) - assigned[stratum] * trials;
+                if (deficit > largestDeficit) {
+                    largestDeficit = deficit;
+                    furthestBehind = stratum;
+                }
+            }
+            strata[trial] = (byte) furthestBehind;
+            assigned[furthestBehind] += 1;
+        }
+        return strata;
+    }
+
+    /**
+     * @param sds   the standard deviation of annual returns for each year from resignation till retirement
+     * @return      the vector <em>u = e1 - sds / |sds|</em>, scaled so that <em>u.u = 2</em> (or all zeros, if no
+     *              reflection is needed). The Householder reflection <em>I - u u^T</em> then maps the first
+     *              coordinate axis to the direction of <code>sds</code>, and (being orthogonal) maps independent
+     *              standard normal shocks to independent standard normal shocks.
+     */
+    private static double[] householderVector(double[] sds) {
+        double[] u = new double[sds.length];
+        double norm = Math.sqrt(Arrays.stream(sds).map(sd -> sd * sd).sum());
+        if (sds.length == 0 || norm == 0) {
+            return u;
+        }
+        for (int year = 0; year < sds.length; year++) {
+            u[year] = (year == 0 ? 1 : 0) - sds[year] / norm;
+        }
+        double uu = Arrays.stream(u).map(x -> x * x).sum();
+        if (uu == 0) {
+            return u;
+        }
+        for (int year = 0; year < sds.length; year++) {
+            u[year] *= Math.sqrt(2 / uu);
+        }
+        return u;
+    }
 
-                    int TdfBalanceAtRetirement = (int) Math.round(TdfBalance);
-                    // add the initial withdrawal amount to its corresponding list
-                    withdrawalAt3pt3pct.add((int) Math.round(.033 * TdfBalanceAtRetirement));
-                    withdrawalAt4pct.add((int) Math.round(.04 * TdfBalanceAtRetirement));
-                    withdrawalAt5pct.add((int) Math.round(.05 * TdfBalanceAtRetirement));
-                });
+    /**
+     * Applies the Householder reflection <em>I - u u^T</em> to <code>shocks</code>, in place
+     */
+    private static void reflect(double[] shocks, double[] u) {
+        double dot = 0;
+        for (int year = 0; year < shocks.length; year++) {
+            dot += u[year] * shocks[year];
+        }
+        for (int year = 0; year < shocks.length; year++) {
+            shocks[year] -= dot * u[year];
+        }
     }
 
     /**
-     * @return  the list (of size <code>trials</code>) of initial withdrawal amounts from the TDF
+     * Computes one trial from standardized annual returns that have already been drawn
+     * @param means     the mean annual return for each year from resignation till retirement
+     * @param sds       the standard deviation of annual returns for each year from resignation till retirement
+     * @param shocks    the standard normal shock for each year from resignation till retirement
+     * @param sign      1 to apply <code>shocks</code> as is, or -1 to apply their antithetic mirror image
+     * @return          the trial's growth factor
+     */
+    private static double growthFactor(double[] means, double[] sds, double[] shocks, double sign) {
+        double growthFactor = 1;
+        for (int year = 0; year < means.length; year++) {
+            growthFactor *= (1 + means[year] + sds[year] * sign * shocks[year] - ReturnSchedule.EXPENSE_RATIO);
+            if (growthFactor <= 0) {
+                return 0;
+            }
+        }
+        return growthFactor;
+    }
+
+    /**
+     * @return  the array (of size <code>trials</code>) of TDF balances at retirement, indexed by trial number
+     *          (or <code>null</code> for a streaming or off-heap simulation)
+     */
+    public synchronized double[] getTdfBalances() {
+        if (tdfBalances == null && cachedGrowthFactors != null) {
+            setTdfBalances(cachedGrowthFactors);
+        }
+        return tdfBalances;
+    }
+
+    /**
+     * @return  for importance sampling, the array (of size <code>trials</code>) of each trial's likelihood ratio,
+     *          indexed by trial number (otherwise <code>null</code>)
+     */
+    public double[] getWeights() { return weights; }
+
+    /**
+     * @return  a summary of the distribution of TDF balances at retirement
+     */
+    public synchronized OutcomeSummary getSummary() {
+        if (summary == null) {
+            summary = weights != null ? new WeightedDistributionSummary(tdfBalances, weights, getEffectiveSampleSize())
+                    : new DistributionSummary(getTdfBalances(), getEffectiveSampleSize());
+        }
+        return summary;
+    }
+
+    /**
+     * @param withdrawalRate    a (positive) withdrawal rate, as a <code>double</code> (e.g., 0.04 for 4%)
+     * @return  a summary of the distribution of initial withdrawal amounts from the TDF
+     *          assuming <code>withdrawalRate</code>
+     */
+    public OutcomeSummary getWithdrawalSummary(double withdrawalRate) {
+        return getSummary().scaledBy(withdrawalRate);
+    }
+
+    public SamplingMethod getSamplingMethod() { return samplingMethod; }
+
+    /**
+     * @return  the model the annual returns were drawn from, for a simulation of a <code>ReturnModel</code>
+     *          (otherwise <code>null</code>: the returns were normal, drawn by <code>getSamplingMethod()</code>)
+     */
+    public ReturnModel getReturnModel() { return returnModel; }
+
+    /**
+     * The effective sample size is the number of independent trials whose mean would be as precise as this
+     * simulation's mean. It's <code>trials</code>, except
+     * <ul>
+     *     <li>with antithetic sampling, where each pair's average is an independent draw: then it's
+     *     (number of pairs) * (variance of outcomes) / (variance of pair averages), and</li>
+     *     <li>with quasi-random sampling, where each replicate's mean is an independent draw: then it's
+     *     (variance of outcomes) / (variance of replicate means / number of replicates),</li>
+     *     <li>with importance sampling, where it's Kish's effective sample size of the weights, and</li>
+     *     <li>with stratified sampling, where the stratified mean (each stratum's mean weighted by its probability)
+     *     has variance <em>sum over strata of (1/STRATA)^2 * (stratum's variance) / (stratum's trials)</em>: then it's
+     *     (variance of outcomes) / (that variance).</li>
+     * </ul>
+     * @return  the effective sample size, as a <code>double</code>
+     */
+    public double getEffectiveSampleSize() {
+        if (tdfBalances == null || trials < 4) {
+            return trials;
+        }
+        double varianceOfMean;
+        switch (samplingMethod) {
+            case ANTITHETIC -> {
+                double[] pairAverages = new double[trials / 2];
+                for (int pair = 0; pair < pairAverages.length; pair++) {
+                    pairAverages[pair] = (tdfBalances[2 * pair] + tdfBalances[2 * pair + 1]) / 2;
+                }
+                varianceOfMean = Statistics.variance(pairAverages) / pairAverages.length;
+            }
+            case QUASI_RANDOM -> {
+                double[] replicateMeans = Arrays.stream(getGroups()).mapToDouble(OutcomeSummary::mean).toArray();
+                varianceOfMean = Statistics.variance(replicateMeans) / replicateMeans.length;
+            }
+            case IMPORTANCE -> {
+                double totalWeight = Arrays.stream(weights).sum();
+                return totalWeight * totalWeight / Arrays.stream(weights).map(weight -> weight * weight).sum();
+            }
+            case STRATIFIED, NEYMAN_STRATIFIED -> {
+                // (every stratum needs at least 2 trials to estimate its variance)
+                if (trials < 2 * STRATA) {
+                    return trials;
+                }
+                int[] counts = new int[STRATA];
+                double[] stratumMeans = new double[STRATA];
+                double[] stratumVariances = new double[STRATA];
+                for (int trial = 0; trial < trials; trial++) {
+                    int stratum = strata != null ? strata[trial] : trial % STRATA;
+                    counts[stratum]++;
+                    stratumMeans[stratum] += tdfBalances[trial];
+                }
+                for (int stratum = 0; stratum < STRATA; stratum++) {
+                    stratumMeans[stratum] /= counts[stratum];
+                }
+                for (int trial = 0; trial < trials; trial++) {
+                    int stratum = strata != null ? strata[trial] : trial % STRATA;
+                    double deviation = tdfBalances[trial] - stratumMeans[stratum];
+                    stratumVariances[stratum] += deviation * deviation / (counts[stratum] - 1);
+                }
+                // the variance of outcomes is the mean of the strata's variances plus the variance of their means
+                double mean = Arrays.stream(stratumMeans).sum() / STRATA;
+                double variance = 0;
+                varianceOfMean = 0;
+                for (int stratum = 0; stratum < STRATA; stratum++) {
+                    variance += (stratumVariances[stratum] + Math.pow(stratumMeans[stratum] - mean, 2)) / STRATA;
+                    varianceOfMean += stratumVariances[stratum] / counts[stratum] / STRATA / STRATA;
+                }
+                return varianceOfMean == 0 ? Double.POSITIVE_INFINITY : variance / varianceOfMean;
+            }
+            default -> {
+                return trials;
+            }
+        }
+        // if every pair (or replicate) averages to the same value, the mean is known exactly
+        return varianceOfMean == 0 ? Double.POSITIVE_INFINITY : Statistics.variance(tdfBalances) / varianceOfMean;
+    }
+
+    /**
+     * Estimates the standard error of a percentile of the TDF balances from the spread of that percentile across
+     * independent groups of trials (the replicates, for quasi-random sampling; otherwise up to 16 groups of whole
+     * blocks).
+     * @param percentile    a <code>Double</code> value in the interval <em>[0,1]</em>
+     * @throws IllegalStateException if this is a streaming or off-heap simulation
+     * @return              the standard error of the <em>100*percentile</em>th percentile TDF balance
+     */
+    public double getPercentileStandardError(double percentile) {
+        double[] groupPercentiles = Arrays.stream(getGroups())
+                .mapToDouble(group -> group.percentile(percentile))
+                .toArray();
+        return Statistics.sd(groupPercentiles) / Math.sqrt(groupPercentiles.length);
+    }
+
+    /**
+     * @return summaries of the TDF balances of independent groups of trials, for estimating standard errors
+     */
+    private OutcomeSummary[] getGroups() {
+        double[] tdfBalances = getTdfBalances();
+        if (tdfBalances == null) {
+            throw new IllegalStateException("a streaming or off-heap simulation doesn't store outcomes on the heap");
+        }
+        boolean byReplicate = samplingMethod == SamplingMethod.QUASI_RANDOM;
+        int groups = byReplicate ? QUASI_RANDOM_REPLICATES
+                : Math.min(16, (int) ((trials + (long) BLOCK_SIZE - 1) / BLOCK_SIZE));
+        int[] sizes = new int[groups];
+        for (int trial = 0; trial < trials; trial++) {
+            sizes[byReplicate ? trial % groups : (trial / BLOCK_SIZE) % groups]++;
+        }
+        double[][] groupBalances = new double[groups][];
+        double[][] groupWeights = new double[groups][];
+        for (int group = 0; group < groups; group++) {
+            groupBalances[group] = new double[sizes[group]];
+            groupWeights[group] = new double[weights != null ? sizes[group] : 0];
+        }
+        int[] filled = new int[groups];
+        for (int trial = 0; trial < trials; trial++) {
+            int group = byReplicate ? trial % groups : (trial / BLOCK_SIZE) % groups;
+            if (weights != null) {
+                groupWeights[group][filled[group]] = weights[trial];
+            }
+            groupBalances[group][filled[group]++] = tdfBalances[trial];
+        }
+        OutcomeSummary[] summaries = new OutcomeSummary[groups];
+        for (int group = 0; group < groups; group++) {
+            summaries[group] = weights != null ? new WeightedDistributionSummary(groupBalances[group], groupWeights[group])
+                    : new DistributionSummary(groupBalances[group]);
+        }
+        return summaries;
+    }
+
+    /**
+     * @return  for an adaptive simulation, whether it met its tolerances before reaching its trial cap
+     *          (otherwise <code>null</code>)
+     */
+    public Boolean isConverged() { return converged; }
+
+    /**
+     * @return the seed from which this simulation's random numbers were generated (to reproduce the run)
+     */
+    public long getSeed() { return randomStreams.getSeed(); }
+
+    public TrsMember getMember() { return member; }
+
+    /**
+     * @return  for a simulation run <code>withSensitivities()</code>, the sensitivities of its outcomes to its main
+     *          assumptions (otherwise <code>null</code>)
+     */
+    public Sensitivities getSensitivities() { return sensitivities; }
+    public RandomStreams getRandomStreams() { return randomStreams; }
+
+    /**
+     * @param withdrawalRate    a (positive) withdrawal rate, as a <code>double</code> (e.g., 0.04 for 4%)
+     * @return  the retirement phase of this simulation's trials, withdrawing an inflation-adjusted income starting
+     *          at <code>withdrawalRate</code> (with <code>Decumulation</code>'s default inflation and horizon)
+     * @throws IllegalStateException if this is a streaming or off-heap simulation
+     */
+    public synchronized Decumulation getDecumulation(double withdrawalRate) {
+        return decumulations.computeIfAbsent(withdrawalRate, rate -> new Decumulation(this, rate));
+    }
+
+    /**
+     * @param age   if not <code>null</code>, the reports also show the probability of running out of money by
+     *              <code>age</code> at each withdrawal rate (see <code>getDecumulation()</code>)
+     */
+    public void setRuinReportAge(Integer age) { this.ruinReportAge = age; }
+
+    /**
+     * @param mortalityTable    if not <code>null</code>, the reports also show the probability, at each withdrawal
+     *                          rate, that the TDF balance lasts for the member's life (drawn from
+     *                          <code>mortalityTable</code>), as the TRS annuity does
+     */
+    public void setMortalityTable(MortalityTable mortalityTable) { this.mortalityTable = mortalityTable; }
+
+    /**
+     * @param withdrawalRate    a withdrawal rate, as a <code>double</code> (e.g., 0.04 for 4%)
+     * @return  a new array (of size <code>trials</code>) of initial withdrawal amounts from the TDF
+     *          assuming <code>withdrawalRate</code>
+     * @throws IllegalStateException if this is a streaming or off-heap simulation
+     */
+    public double[] getWithdrawals(double withdrawalRate) {
+        double[] tdfBalances = getTdfBalances();
+        if (tdfBalances == null) {
+            throw new IllegalStateException("a streaming or off-heap simulation doesn't store outcomes on the heap");
+        }
+        return Arrays.stream(tdfBalances).map(balance -> withdrawalRate * balance).toArray();
+    }
+
+    /**
+     * @return  the array (of size <code>trials</code>) of initial withdrawal amounts from the TDF
      *          assuming a 3.3% withdrawal rate
      */
-    public List<Integer> getWithdrawalAt3pt3pct() { return withdrawalAt3pt3pct; }
+    public double[] getWithdrawalAt3pt3pct() { return getWithdrawals(.033); }
 
     /**
-     * @return  the list (of size <code>trials</code>) of initial withdrawal amounts from the TDF
+     * @return  the array (of size <code>trials</code>) of initial withdrawal amounts from the TDF
      *          assuming a 4% withdrawal rate
      */
-    public List<Integer> getWithdrawalAt4pct() { return withdrawalAt4pct; }
+    public double[] getWithdrawalAt4pct() { return getWithdrawals(.04); }
 
     /**
-     * @return  the list (of size <code>trials</code>) of initial withdrawal amounts from the TDF
+     * @return  the array (of size <code>trials</code>) of initial withdrawal amounts from the TDF
      *          assuming a 5% withdrawal rate
      */
-    public List<Integer> getWithdrawalAt5pct() { return withdrawalAt5pct; }
+    public double[] getWithdrawalAt5pct() { return getWithdrawals(.05); }
+
+    /**
+     * @return  the withdrawal rates shown in the reports (a copy)
+     */
+    public double[] getWithdrawalRates() { return withdrawalRates.clone(); }
+
+    /**
+     * Sets the withdrawal rates shown in the reports. No trials are re-run: every rate's outcomes are the same TDF
+     * balances, scaled. (For a streaming simulation, P(earning < TRS) is exact only at
+     * <code>WITHDRAWAL_RATES</code>; at other rates it's read from the quantile sketch.)
+     * @param withdrawalRates   one or more (positive) withdrawal rates, as <code>double</code>s (e.g., 0.04 for 4%)
+     * @throws IllegalArgumentException if no rates are given or any rate is not positive
+     */
+    public void setWithdrawalRates(double... withdrawalRates) {
+        if (withdrawalRates.length == 0) throw new IllegalArgumentException("at least one withdrawal rate is needed");
+        for (double rate : withdrawalRates) {
+            if (!(rate > 0)) throw new IllegalArgumentException("withdrawal rates must be positive");
+        }
+        this.withdrawalRates = withdrawalRates.clone();
+    }
+
+    /**
+     * @param first a (positive) withdrawal rate, as a <code>double</code> (e.g., 0.025 for 2.5%)
+     * @param last  the largest withdrawal rate, at least <code>first</code>
+     * @param step  the (positive) difference between consecutive rates (e.g., 0.001 for 0.1%)
+     * @throws IllegalArgumentException if <code>first</code> or <code>step</code> is not positive, or if
+     *                                  <code>last</code> is less than <code>first</code>
+     * @return      the rates <code>first</code>, <code>first + step</code>, ... up to <code>last</code> (rounded to
+     *              the nearest 0.0001%, so that rates like 2.5% + 6 * 0.1% come out as exactly 3.1%)
+     */
+    public static double[] withdrawalRateRange(double first, double last, double step) {
+        if (!(first > 0) || !(step > 0)) throw new IllegalArgumentException("first and step must be positive");
+        if (last < first) throw new IllegalArgumentException("last must be at least first");
+        int count = (int) Math.floor((last - first) / step + 1e-9) + 1;
+        double[] rates = new double[count];
+        for (int i = 0; i < count; i++) {
+            rates[i] = Math.round((first + i * step) * 1e6) / 1e6;
+        }
+        return rates;
+    }
+
+    /**
+     * @param n a positive <code>int</code>
+     * @return  <code>n</code> as an ordinal number (e.g., "1st", "12th", "23rd")
+     */
+    static String ordinal(int n) {
+        if (n % 10 == 1 && n % 100 != 11) {
+            return n + "st";
+        }
+        else if (n % 10 == 2 && n % 100 != 12) {
+            return n + "nd";
+        }
+        else if (n % 10 == 3 && n % 100 != 13) {
+            return n + "rd";
+        }
+        return n + "th";
+    }
+
+    /**
+     * @param rate  a withdrawal rate, as a <code>double</code> (e.g., 0.033)
+     * @return      the rate as a percentage, without trailing zeros (e.g., "3.3%")
+     */
+    static String formatRate(double rate) {
+        return java.math.BigDecimal.valueOf(Math.round(100000 * rate), 3).stripTrailingZeros().toPlainString() + "%";
+    }
+
+    /**
+     * @return  a string of the details needed to reproduce (and to judge the precision of) this simulation
+     */
+    private String getRunDetails() {
+        String details = "random seed: " + getSeed() + ", " + randomStreams.getAlgorithm();
+        if (returnModel != null) {
+            details += "; " + returnModel.getDescription();
+        }
+        if (converged != null) {
+            details += converged ? "; adaptive mode, stopped once the estimates converged"
+                    : "; adaptive mode, stopped at the trial cap before the estimates converged";
+        }
+        if (samplingMethod == SamplingMethod.ANTITHETIC) {
+            details += "; antithetic variates, effective sample size " +
+                    String.format("%,.0f", getSummary().effectiveSampleSize());
+        }
+        if (samplingMethod == SamplingMethod.IMPORTANCE) {
+            details += "; importance sampling toward bad markets, effective sample size " +
+                    String.format("%,.0f", getSummary().effectiveSampleSize());
+        }
+        if (samplingMethod == SamplingMethod.STRATIFIED || samplingMethod == SamplingMethod.NEYMAN_STRATIFIED) {
+            details += "; " + (samplingMethod == SamplingMethod.NEYMAN_STRATIFIED ? "Neyman-allocated" : "proportionally") +
+                    " stratified sampling in " + STRATA + " strata, effective sample size " +
+                    String.format("%,.0f", getSummary().effectiveSampleSize());
+        }
+        if (samplingMethod == SamplingMethod.QUASI_RANDOM) {
+            details += "; quasi-random (scrambled Sobol) sampling in " + QUASI_RANDOM_REPLICATES +
+                    " replicates, effective sample size " + String.format("%,.0f", getSummary().effectiveSampleSize());
+        }
+        if (getSummary() instanceof StreamingSummary streamingSummary) {
+            details += "; streaming mode, percentiles accurate to within " +
+                    String.format("%.1f%%", 100 * streamingSummary.getRelativeAccuracy());
+        }
+        if (getSummary() instanceof OffHeapSummary) {
+            details += "; outcomes stored off the heap";
+        }
+        if (getSummary() instanceof QuantizedSummary quantizedSummary) {
+            QuantizedSummary.Encoding encoding = quantizedSummary.getEncoding();
+            details += "; outcomes stored as " + encoding.getDescription() + ", accurate to within " +
+                    String.format("%.2g%%", 100 * encoding.getRelativeErrorBound());
+        }
+        return details;
+    }
 
     /**
      * @return  a string summarizing the results of the simulation,
@@ -92,53 +1317,58 @@ public class MonteCarloSimulation {
     public String toString() {
         String str = "As one alternative, you could roll your TRS account balance into an IRA upon your resignation\n" +
                 "and invest that money in a Vanguard Target Date Retirement Fund (TDF). I performed a Monte Carlo\n" +
-                "simulation for you with " + String.format("%,d", trials) + " trials to model those outcomes.\n\n";
+                "simulation for you with " + String.format("%,d", trials) + " trials to model those outcomes.\n" +
+                "(" + getRunDetails() + ")\n\n";
+        OutcomeSummary[] withdrawals = new OutcomeSummary[withdrawalRates.length];
+        for (int i = 0; i < withdrawalRates.length; i++) {
+            withdrawals[i] = getWithdrawalSummary(withdrawalRates[i]);
+        }
 
         // column headers
         int width = 22;
         String sf = "%" + width + "s";
-        str += String.format(sf, "withdrawal rate") + String.format("%" + (width/2 + 3) + "s", "3.3%") +
-                String.format(sf, "4%") + String.format(sf, "5%") + "\n";
+        str += String.format(sf, "withdrawal rate");
+        for (int i = 0; i < withdrawalRates.length; i++) {
+            str += String.format(i == 0 ? "%" + (width/2 + 3) + "s" : sf, formatRate(withdrawalRates[i]));
+        }
+        str += "\n";
 
         // percentiles
         for (int percent : new int[]{1, 5, 25, 50}) {
-            String rowHeader = String.format("%2s", percent);
-            if (percent % 10 == 1 && percent != 11) {
-                rowHeader += "st";
+            str += String.format(sf, String.format("%2s", ordinal(percent)) + " percentile");
+            for (OutcomeSummary withdrawal : withdrawals) {
+                str += String.format(sf, String.format("%,d", (int) Math.round(withdrawal.percentile((double) percent/100))));
             }
-            else if (percent % 10 == 2 && percent != 12) {
-                rowHeader += "nd";
-            }
-            else if (percent % 10 == 3 && percent != 13) {
-                rowHeader += "rd";
-            }
-            else {
-                rowHeader += "th";
-            }
-            rowHeader += " percentile";
-            str += String.format(sf, rowHeader);
-            str += String.format(sf, String.format("%,d", (int) Math.round(Statistics.percentile(withdrawalAt3pt3pct, (double) percent/100)))) +
-                    String.format(sf, String.format("%,d", (int) Math.round(Statistics.percentile(withdrawalAt4pct, (double) percent/100)))) +
-                    String.format(sf, String.format("%,d", (int) Math.round(Statistics.percentile(withdrawalAt5pct, (double) percent/100)))) + "\n";
+            str += "\n";
         }
 
         // means
         int confidence = 99;
         str += String.format(sf, "mean (w/ " + confidence + "% C.I.)");
-        str += String.format(sf, String.format("%,d", (int) Math.round(Statistics.mean(withdrawalAt3pt3pct))) + " +/- " +
-                String.format("%,d", (int) Math.round(Statistics.getMarginOfError(withdrawalAt3pt3pct, (double) confidence/100))));
-        str += String.format(sf, String.format("%,d", (int) Math.round(Statistics.mean(withdrawalAt4pct))) + " +/- " +
-                String.format("%,d", (int) Math.round(Statistics.getMarginOfError(withdrawalAt4pct, (double) confidence/100))));
-        str += String.format(sf, String.format("%,d", (int) Math.round(Statistics.mean(withdrawalAt5pct))) + " +/- " +
-                String.format("%,d", (int) Math.round(Statistics.getMarginOfError(withdrawalAt5pct, (double) confidence/100)))) +
-                "\n";
+        for (OutcomeSummary withdrawal : withdrawals) {
+            str += String.format(sf, String.format("%,d", (int) Math.round(withdrawal.mean())) + " +/- " +
+                    String.format("%,d", (int) Math.round(withdrawal.getMarginOfError((double) confidence/100))));
+        }
+        str += "\n";
 
         // probabilities
         String ff = "%" + (width-1) + ".1f%%";
-        str += String.format(sf, "P(earning < TRS)") +
-                String.format(ff, 100 * Statistics.percentBelow(withdrawalAt3pt3pct, member.getTrsAccount().getNormalBenefit())) +
-                String.format(ff, 100 * Statistics.percentBelow(withdrawalAt4pct, member.getTrsAccount().getNormalBenefit())) +
-                String.format(ff, 100 * Statistics.percentBelow(withdrawalAt5pct, member.getTrsAccount().getNormalBenefit()));
+        str += String.format(sf, "P(earning < TRS)");
+        for (OutcomeSummary withdrawal : withdrawals) {
+            str += String.format(ff, 100 * withdrawal.percentBelow(member.getTrsAccount().getNormalBenefit()));
+        }
+        if (ruinReportAge != null) {
+            str += "\n" + String.format(sf, "P(broke by " + ruinReportAge + ")");
+            for (double rate : withdrawalRates) {
+                str += String.format(ff, 100 * getDecumulation(rate).getProbabilityOfRuinBy(ruinReportAge));
+            }
+        }
+        if (mortalityTable != null) {
+            str += "\n" + String.format(sf, "P(lasts for life)");
+            for (double rate : withdrawalRates) {
+                str += String.format(ff, 100 * getDecumulation(rate).getProbabilityOfLastingForLife(mortalityTable));
+            }
+        }
         return str;
     }
 
@@ -150,60 +1380,62 @@ public class MonteCarloSimulation {
         String p1 = "<p>As one alternative, you could roll your TRS account balance into an IRA upon your " +
                 "resignation and invest that money in a Vanguard Target Date Retirement Fund (TDF). I performed a " +
                 "Monte Carlo simulation for you with " +
-                String.format("%,d", trials) + " trials to model those outcomes.</p>";
+                String.format("%,d", trials) + " trials to model those outcomes.</p>" +
+                "<p style=\"font-size: small\">(" + getRunDetails() + ")</p>";
+        OutcomeSummary[] withdrawals = new OutcomeSummary[withdrawalRates.length];
+        for (int i = 0; i < withdrawalRates.length; i++) {
+            withdrawals[i] = getWithdrawalSummary(withdrawalRates[i]);
+        }
 
         // table: column headers
-        String t1 = "<center><table style=\"width:45em\">"
+        String t1 = "<center><table style=\"width:" + (15 + 10 * withdrawalRates.length) + "em\">"
                     + "<tr>"
-                    + "<td>withdrawal rate</td>"
-                    + "<td style=\"text-align: center\"><strong>3.3%</strong></td>"
-                    + "<td style=\"text-align: center\"><strong>4%</strong></td>"
-                    + "<td style=\"text-align: center\"><strong>5%</strong></td>"
-                    + "</tr>";
+                    + "<td>withdrawal rate</td>";
+        for (double rate : withdrawalRates) {
+            t1 += "<td style=\"text-align: center\"><strong>" + formatRate(rate) + "</strong></td>";
+        }
+        t1 += "</tr>";
         // table: percentiles
         for (int percent : new int[]{1, 5, 25, 50}) {
-            String rowHeader = "<tr><td>" + percent;
-            if (percent % 10 == 1 && percent != 11) {
-                rowHeader += "st";
-            }
-            else if (percent % 10 == 2 && percent != 12) {
-                rowHeader += "nd";
-            }
-            else if (percent % 10 == 3 && percent != 13) {
-                rowHeader += "rd";
+            t1 += "<tr><td>" + ordinal(percent) + " percentile</td>";
+            for (OutcomeSummary withdrawal : withdrawals) {
+                t1 += "<td style=\"text-align: right\">" + "$" + String.format("%,d", (int) Math.round(withdrawal.percentile((double) percent/100))) + "</td>";
             }
-            else {
-                rowHeader += "th";
-            }
-            rowHeader += " percentile</td>";
-            t1 += rowHeader;
-            t1 += "<td style=\"text-align: right\">" + "$" + String.format("%,d", (int) Math.round(Statistics.percentile(withdrawalAt3pt3pct, (double) percent/100))) + "</td>" +
-                    "<td style=\"text-align: right\">" + "$" + String.format("%,d", (int) Math.round(Statistics.percentile(withdrawalAt4pct, (double) percent/100))) + "</td>" +
-                    "<td style=\"text-align: right\">" + "$" + String.format("%,d", (int) Math.round(Statistics.percentile(withdrawalAt5pct, (double) percent/100))) + "</td>" +
-                    "</tr>";
+            t1 += "</tr>";
         }
 
         // table: means
         int confidence = 99;
         t1 += "<tr><td>" + "mean (w/ " + confidence + "% C.I.)" + "</td>";
-        t1 += "<td style=\"text-align: right\">" + "$" + String.format("%,d", (int) Math.round(Statistics.mean(withdrawalAt3pt3pct))) + " +/- " +
-                "$" + String.format("%,d", (int) Math.round(Statistics.getMarginOfError(withdrawalAt3pt3pct, (double) confidence/100)))
-                + "</td>";
-        t1 += "<td style=\"text-align: right\">" + "$" + String.format("%,d", (int) Math.round(Statistics.mean(withdrawalAt4pct))) + " +/- " +
-                "$" + String.format("%,d", (int) Math.round(Statistics.getMarginOfError(withdrawalAt4pct, (double) confidence/100)))
-                + "</td>";
-        t1 += "<td style=\"text-align: right\">" + "$" + String.format("%,d", (int) Math.round(Statistics.mean(withdrawalAt5pct))) + " +/- " +
-                "$" + String.format("%,d", (int) Math.round(Statistics.getMarginOfError(withdrawalAt5pct, (double) confidence/100)))
-                + "</td></tr>";
+        for (OutcomeSummary withdrawal : withdrawals) {
+            t1 += "<td style=\"text-align: right\">" + "$" + String.format("%,d", (int) Math.round(withdrawal.mean())) + " +/- " +
+                    "$" + String.format("%,d", (int) Math.round(withdrawal.getMarginOfError((double) confidence/100)))
+                    + "</td>";
+        }
+        t1 += "</tr>";
 
         // table: probabilities
         String ff = "%.1f%%";
-        t1 += "<tr><td>" + "P(earning < TRS)" + "</td>" +
-                "<td style=\"text-align: right\">" + String.format(ff, 100 * Statistics.percentBelow(withdrawalAt3pt3pct, member.getTrsAccount().getNormalBenefit())) + "</td>" +
-                "<td style=\"text-align: right\">" + String.format(ff, 100 * Statistics.percentBelow(withdrawalAt4pct, member.getTrsAccount().getNormalBenefit())) + "</td>" +
-                "<td style=\"text-align: right\">" + String.format(ff, 100 * Statistics.percentBelow(withdrawalAt5pct, member.getTrsAccount().getNormalBenefit()))
-                + "</td></tr>"
-                + "</center></table>";
+        t1 += "<tr><td>" + "P(earning < TRS)" + "</td>";
+        for (OutcomeSummary withdrawal : withdrawals) {
+            t1 += "<td style=\"text-align: right\">" + String.format(ff, 100 * withdrawal.percentBelow(member.getTrsAccount().getNormalBenefit())) + "</td>";
+        }
+        t1 += "</tr>";
+        if (ruinReportAge != null) {
+            t1 += "<tr><td>" + "P(broke by " + ruinReportAge + ")" + "</td>";
+            for (double rate : withdrawalRates) {
+                t1 += "<td style=\"text-align: right\">" + String.format(ff, 100 * getDecumulation(rate).getProbabilityOfRuinBy(ruinReportAge)) + "</td>";
+            }
+            t1 += "</tr>";
+        }
+        if (mortalityTable != null) {
+            t1 += "<tr><td>" + "P(lasts for life)" + "</td>";
+            for (double rate : withdrawalRates) {
+                t1 += "<td style=\"text-align: right\">" + String.format(ff, 100 * getDecumulation(rate).getProbabilityOfLastingForLife(mortalityTable)) + "</td>";
+            }
+            t1 += "</tr>";
+        }
+        t1 += "</center></table>";
 
         // histogram image
         String i1 = "<center><img src=\"cid:image\" alt=\"histogram of Monte Carlo trial outcomes\" width=\"850\"></center>";
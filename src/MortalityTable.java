@@ -0,0 +1,235 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+/**
+ * A period mortality table: for each age <em>x</em>, the probability <em>q_x</em> that someone alive at age
+ * <em>x</em> dies before reaching <em>x + 1</em>.
+ * <p>
+ * A table can be loaded from a text file (see <code>load()</code>), or built from Gompertz's law of mortality,
+ * whose force of mortality at age <em>x</em> is <em>exp((x - m) / b) / b</em>, for a modal age at death
+ * <em>m</em> and a dispersion <em>b</em>. Lifetimes are sampled with an alias table (Walker, 1977; Vose, 1991),
+ * which costs one table lookup and two random numbers per lifetime, however many ages there are.
+ *
+ * @author Charlie Barnes
+ */
+public class MortalityTable {
+    // the file from which a table is loaded by default
+    public static final String DEFAULT_FILE = "MortalityTable.txt";
+    // everyone is assumed to die by this age (q is 1 here), unless the table says otherwise
+    public static final int MAX_AGE = 120;
+    // Gompertz mortality with a modal age at death of 88 and dispersion of 10 years, which roughly matches
+    // current US population tables at retirement ages (life expectancy at 65 of about 20 years)
+    public static final MortalityTable GOMPERTZ = gompertz(88, 10);
+
+    private final double[] q;
+
+    /**
+     * Class constructor
+     * @param q the probability that someone alive at each age (from 0 through the last) dies before the next;
+     *          the last age's probability is taken to be 1
+     * @throws IllegalArgumentException if <code>q</code> is empty, or any probability is not in <em>[0,1]</em>
+     */
+    public MortalityTable(double[] q) {
+        if (q.length == 0) throw new IllegalArgumentException("q must be non-empty");
+        for (double probability : q) {
+            if (!(probability >= 0 && probability <= 1)) {
+                throw new IllegalArgumentException("probabilities of death must be between 0 and 1, inclusive");
+            }
+        }
+        this.q = q.clone();
+        this.q[q.length - 1] = 1;
+    }
+
+    /**
+     * @param modalAge      the modal age at death, <em>m</em>
+     * @param dispersion    the (positive) dispersion, <em>b</em>, in years
+     * @return              the Gompertz mortality table for ages 0 through <code>MAX_AGE</code>
+     */
+    public static MortalityTable gompertz(double modalAge, double dispersion) {
+        if (!(dispersion > 0)) throw new IllegalArgumentException("dispersion must be positive");
+        double[] q = new double[MAX_AGE + 1];
+        for (int age = 0; age <= MAX_AGE; age++) {
+            // 1 - exp(-(integral of the force of mortality from age to age + 1))
+            q[age] = -Math.expm1(Math.exp((age - modalAge) / dispersion) * -Math.expm1(1 / dispersion));
+        }
+        return new MortalityTable(q);
+    }
+
+    /**
+     * @return  the table in <code>DEFAULT_FILE</code>
+     * @throws IOException if the file can't be read or isn't a mortality table
+     */
+    public static MortalityTable load() throws IOException {
+        return load(DEFAULT_FILE);
+    }
+
+    /**
+     * Loads a mortality table from a text file. Each line holds an age and its <em>q_x</em>, separated by
+     * whitespace or a comma; ages must be consecutive and increasing. Blank lines and lines starting with "#" are
+     * skipped. Ages before the first are given <em>q_x = 0</em> (only ages from retirement on matter here).
+     * @param file  the name of the file
+     * @return      the table
+     * @throws IOException if the file can't be read or isn't a mortality table
+     */
+    public static MortalityTable load(String file) throws IOException {
+        List<Double> probabilities = new ArrayList<>();
+        int firstAge = -1;
+        try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("[\\s,]+");
+                try {
+                    int age = Integer.parseInt(fields[0]);
+                    if (firstAge < 0) {
+                        firstAge = age;
+                    }
+                    if (fields.length < 2 || age != firstAge + probabilities.size()) {
+                        throw new IOException("bad mortality table line: " + line);
+                    }
+                    probabilities.add(Double.parseDouble(fields[1]));
+                }
+                catch (NumberFormatException e) {
+                    throw new IOException("bad mortality table line: " + line);
+                }
+            }
+        }
+        if (probabilities.isEmpty()) throw new IOException("empty mortality table");
+        double[] q = new double[firstAge + probabilities.size()];
+        for (int i = 0; i < probabilities.size(); i++) {
+            q[firstAge + i] = probabilities.get(i);
+        }
+        try {
+            return new MortalityTable(q);
+        }
+        catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
+    /**
+     * @return  the table in <code>DEFAULT_FILE</code>, or <code>GOMPERTZ</code> if that file doesn't exist or
+     *          can't be read
+     */
+    public static MortalityTable loadOrDefault() {
+        try {
+            return load();
+        }
+        catch (IOException e) {
+            return GOMPERTZ;
+        }
+    }
+
+    /**
+     * @param age   an age
+     * @return      the probability that someone alive at <code>age</code> dies before <code>age + 1</code>
+     */
+    public double getQ(int age) {
+        return age >= q.length ? 1 : q[Math.max(0, age)];
+    }
+
+    /**
+     * @return  the last age in the table, by which everyone has died
+     */
+    public int getMaxAge() { return q.length - 1; }
+
+    /**
+     * @param age   an age (at most <code>getMaxAge()</code>)
+     * @return      the expected remaining years of life of someone alive at <code>age</code> (with deaths assumed
+     *              to happen mid-year)
+     */
+    public double getLifeExpectancy(int age) {
+        double survival = 1;
+        double years = 0;
+        for (int x = Math.max(0, age); x < q.length; x++) {
+            years += survival * (1 - q[x] / 2);
+            survival *= 1 - q[x];
+        }
+        return years;
+    }
+
+    /**
+     * @param age   an age (at most <code>getMaxAge()</code>)
+     * @return      a sampler of ages at death for someone alive at <code>age</code>
+     */
+    public Lifetimes lifetimesFrom(int age) {
+        return new Lifetimes(age);
+    }
+
+    /**
+     * An alias table of the distribution of age at death, given survival to some age. Each instance is
+     * immutable, so it can be shared by all worker threads.
+     */
+    public class Lifetimes {
+        private final int fromAge;
+        // for slot i: the probability of keeping age fromAge + i, and the slot to go to otherwise
+        private final double[] keep;
+        private final int[] alias;
+
+        private Lifetimes(int fromAge) {
+            if (fromAge < 0 || fromAge > getMaxAge()) throw new IllegalArgumentException("age is out of range");
+            this.fromAge = fromAge;
+            int n = q.length - fromAge;
+            double[] scaled = new double[n];
+            double survival = 1;
+            for (int i = 0; i < n; i++) {
+                scaled[i] = n * survival * q[fromAge + i];
+                survival *= 1 - q[fromAge + i];
+            }
+
+            // Vose's method: pair each slot with less than its share with one that has more
+            keep = new double[n];
+            alias = new int[n];
+            int[] small = new int[n];
+            int[] large = new int[n];
+            int smalls = 0;
+            int larges = 0;
+            for (int i = 0; i < n; i++) {
+                if (scaled[i] < 1) {
+                    small[smalls++] = i;
+                }
+                else {
+                    large[larges++] = i;
+                }
+            }
+            while (smalls > 0 && larges > 0) {
+                int less = small[--smalls];
+                int more = large[--larges];
+                keep[less] = scaled[less];
+                alias[less] = more;
+                scaled[more] -= 1 - scaled[less];
+                if (scaled[more] < 1) {
+                    small[smalls++] = more;
+                }
+                else {
+                    large[larges++] = more;
+                }
+            }
+            // whatever is left has (up to rounding) exactly its share
+            while (larges > 0) {
+                keep[large[--larges]] = 1;
+            }
+            while (smalls > 0) {
+                keep[small[--smalls]] = 1;
+            }
+        }
+
+        /**
+         * @param rng   a source of randomness
+         * @return      a random age at death
+         */
+        public int sample(RandomGenerator rng) {
+            int slot = rng.nextInt(keep.length);
+            return fromAge + (rng.nextDouble() < keep[slot] ? slot : alias[slot]);
+        }
+
+        public int getFromAge() { return fromAge; }
+    }
+}
@@ -0,0 +1,23 @@
+import java.util.random.RandomGenerator;
+
+/**
+ * Independent, normally distributed annual returns, with each year's mean and standard deviation taken from the
+ * <code>ReturnSchedule</code>. This is the model behind <code>SamplingMethod.MONTE_CARLO</code>: Monte Carlo trials
+ * draw their returns with it, so for the same random streams the two give exactly the same trials.
+ *
+ * @author Charlie Barnes
+ */
+public class NormalReturnModel implements ReturnModel {
+    public void fillReturns(ReturnSchedule schedule, double[] returns, int trials, RandomGenerator rng) {
+        double[] means = schedule.getMeans();
+        double[] sds = schedule.getSds();
+        int years = means.length;
+        for (int trial = 0; trial < trials; trial++) {
+            for (int year = 0; year < years; year++) {
+                returns[year * trials + trial] = means[year] + sds[year] * ZigguratNormal.sample(rng);
+            }
+        }
+    }
+
+    public String getDescription() { return "normal returns"; }
+}
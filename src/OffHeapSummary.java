@@ -0,0 +1,207 @@
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
+/**
+ * An immutable summary of trial outcomes held in an <code>OutcomeBuffer</code>, outside the Java heap (see
+ * <code>MonteCarloSimulation.offHeap</code>). Every statistic is exact (up to floating-point rounding), as for a
+ * <code>DistributionSummary</code> of the same outcomes.
+ * <p>
+ * When the summary is built, each run of the buffer is sorted in place, in parallel (a task copies a run to a
+ * scratch array on the heap, sorts it, and copies it back, so only a few runs are ever on the heap at once), and the
+ * runs' means and sums of squared deviations are merged in run order. The runs are never merged into one sorted
+ * sequence. Instead, the proportion of outcomes below a threshold is a binary search in each run, and the
+ * <em>k</em>th smallest outcome (for percentiles) is found by bisecting on its value, counting the outcomes at most
+ * each candidate with a binary search in each run. With <em>R</em> runs of <em>L</em> outcomes, a percentile costs
+ * <em>O(64 R log L)</em> reads of the buffer (a few milliseconds for a billion outcomes).
+ *
+ * @author Charlie Barnes
+ */
+public class OffHeapSummary implements OutcomeSummary {
+    private final OutcomeBuffer buffer;
+    private final double scale;
+    private final double mean;
+    private final double sd;
+    private final double min;
+    private final double max;
+
+    /**
+     * Class constructor, which sorts each run of <code>buffer</code> in place
+     * @param buffer    the outcomes (which must not be modified afterward)
+     */
+    public OffHeapSummary(OutcomeBuffer buffer) {
+        this.buffer = buffer;
+        scale = 1;
+        int runs = buffer.getRuns();
+        double[] runMeans = new double[runs];
+        double[] runM2s = new double[runs];
+        double[] runMins = new double[runs];
+        double[] runMaxes = new double[runs];
+        TrialScheduler.forEachBlock(0, runs, () -> new double[OutcomeBuffer.RUN_SIZE], (scratch, run) -> {
+            DoubleBuffer outcomes = buffer.getRun(run);
+            int length = outcomes.capacity();
+            outcomes.get(0, scratch, 0, length);
+            Arrays.sort(scratch, 0, length);
+            outcomes.put(0, scratch, 0, length);
+            double runMean = 0;
+            for (int i = 0; i < length; i++) {
+                runMean += scratch[i];
+            }
+            runMean /= length;
+            double runM2 = 0;
+            for (int i = 0; i < length; i++) {
+                runM2 += (scratch[i] - runMean) * (scratch[i] - runMean);
+            }
+            runMeans[run] = runMean;
+            runM2s[run] = runM2;
+            runMins[run] = scratch[0];
+            runMaxes[run] = scratch[length - 1];
+        });
+
+        // merge the runs' means and squared deviations (Chan et al.)
+        double mergedMean = 0;
+        double m2 = 0;
+        long n = 0;
+        for (int run = 0; run < runs; run++) {
+            long runN = buffer.getRunLength(run);
+            double delta = runMeans[run] - mergedMean;
+            long mergedN = n + runN;
+            mergedMean += delta * runN / mergedN;
+            m2 += runM2s[run] + delta * delta * n * runN / mergedN;
+            n = mergedN;
+        }
+        mean = mergedMean;
+        sd = n > 1 ? Math.sqrt(m2 / (n - 1)) : 0;
+        min = Arrays.stream(runMins).min().orElseThrow();
+        max = Arrays.stream(runMaxes).max().orElseThrow();
+    }
+
+    private OffHeapSummary(OutcomeBuffer buffer, double scale, double mean, double sd, double min, double max) {
+        this.buffer = buffer;
+        this.scale = scale;
+        this.mean = mean;
+        this.sd = sd;
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * @param factor    a positive <code>double</code>
+     * @throws IllegalArgumentException if <code>factor</code> is not positive
+     * @return  a summary of these outcomes with every outcome multiplied by <code>factor</code> (sharing the buffer)
+     */
+    public OffHeapSummary scaledBy(double factor) {
+        if (!(factor > 0)) throw new IllegalArgumentException("factor must be positive");
+        return new OffHeapSummary(buffer, scale * factor, mean * factor, sd * factor, min, max);
+    }
+
+    public long size() { return buffer.size(); }
+    public double mean() { return mean; }
+    public double sd() { return sd; }
+    public double min() { return scale * min; }
+    public double max() { return scale * max; }
+
+    /**
+     * @param percentile    a <code>Double</code> value in the interval <em>[0,1]</em>
+     * @throws IllegalArgumentException    if percentile is less than 0 or greater than 1
+     * @return              the <em>100*percentile</em>th percentile outcome, as a <code>double</code> (the same as
+     *                      <code>DistributionSummary.percentile</code> for the same outcomes)
+     */
+    public double percentile(double percentile) {
+        if (percentile < 0 || percentile > 1) {
+            throw new IllegalArgumentException("percentile must be between 0 and 1, inclusive");
+        }
+        double doubleIndex = percentile * (buffer.size() - 1);
+        long indexBelow = (long) Math.floor(doubleIndex);
+        long indexAbove = (long) Math.ceil(doubleIndex);
+        double below = select(indexBelow);
+        double above = indexAbove == indexBelow ? below : select(indexAbove);
+        return scale * (below + above) / 2;
+    }
+
+    /**
+     * @param threshold a <code>double</code>
+     * @return          the number of outcomes that are strictly less than <code>threshold</code>
+     */
+    public long countBelow(double threshold) {
+        double unscaled = threshold / scale;
+        long count = 0;
+        for (int run = 0; run < buffer.getRuns(); run++) {
+            // binary search for the run's first outcome that is at least threshold
+            DoubleBuffer outcomes = buffer.getRun(run);
+            int low = 0;
+            int high = outcomes.capacity();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (outcomes.get(mid) < unscaled) {
+                    low = mid + 1;
+                }
+                else {
+                    high = mid;
+                }
+            }
+            count += low;
+        }
+        return count;
+    }
+
+    /**
+     * @param k an index in the interval <em>[0, size())</em>
+     * @return  the (unscaled) <em>k</em>th smallest outcome (counting from 0)
+     */
+    private double select(long k) {
+        // bisect on the outcomes' order-preserving keys for the smallest value that at least k + 1 outcomes are at
+        // most (which is itself an outcome)
+        long low = key(min);
+        long high = key(max);
+        while (low < high) {
+            long mid = (low & high) + ((low ^ high) >> 1);
+            if (countAtMost(value(mid)) > k) {
+                high = mid;
+            }
+            else {
+                low = mid + 1;
+            }
+        }
+        return value(low);
+    }
+
+    /**
+     * @param value a <code>double</code>
+     * @return      the number of outcomes that are at most <code>value</code> (in the order of
+     *              <code>Double.compare</code>, which is the order the runs are sorted in)
+     */
+    private long countAtMost(double value) {
+        long count = 0;
+        for (int run = 0; run < buffer.getRuns(); run++) {
+            DoubleBuffer outcomes = buffer.getRun(run);
+            int low = 0;
+            int high = outcomes.capacity();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (Double.compare(outcomes.get(mid), value) <= 0) {
+                    low = mid + 1;
+                }
+                else {
+                    high = mid;
+                }
+            }
+            count += low;
+        }
+        return count;
+    }
+
+    /**
+     * @return  a <code>long</code> whose signed order is the order of <code>Double.compare</code>
+     */
+    private static long key(double value) {
+        long bits = Double.doubleToLongBits(value);
+        return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+    }
+
+    /**
+     * @return  the <code>double</code> whose key is <code>key</code> (the inverse of <code>key()</code>)
+     */
+    private static double value(long key) {
+        return Double.longBitsToDouble(key ^ ((key >> 63) & Long.MAX_VALUE));
+    }
+}
@@ -0,0 +1,154 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Storage for the trial outcomes of a <code>MonteCarloSimulation</code> outside the Java heap, so the number of
+ * trials isn't limited by the heap size (see <code>MonteCarloSimulation.offHeap</code>). A billion outcomes take
+ * 8 GB, none of it on the heap.
+ * <p>
+ * The outcomes are held in runs of <code>RUN_SIZE</code> <code>double</code>s (a direct or memory-mapped buffer
+ * can't exceed 2 GB), either in direct buffers, which count against the JVM's limit on direct memory (by default,
+ * the maximum heap size), or mapped from a file, which the operating system pages in and out as needed. Outcomes
+ * are read and written with absolute gets and puts, which never change a buffer's position, so worker threads can
+ * share a buffer as long as they write to different indices.
+ *
+ * @author Charlie Barnes
+ */
+public class OutcomeBuffer {
+    // the number of outcomes in each run (8 MB), a multiple of MonteCarloSimulation.BLOCK_SIZE
+    public static final int RUN_SIZE = 1 << 20;
+
+    private final long size;
+    private final DoubleBuffer[] runs;
+
+    private OutcomeBuffer(long size, DoubleBuffer[] runs) {
+        this.size = size;
+        this.runs = runs;
+    }
+
+    /**
+     * @param size  the (positive) number of outcomes to store
+     * @throws IllegalArgumentException if <code>size</code> is not positive
+     * @return      a buffer of <code>size</code> outcomes (initially 0) in direct memory
+     */
+    public static OutcomeBuffer allocateDirect(long size) {
+        DoubleBuffer[] runs = new DoubleBuffer[runs(size)];
+        for (int run = 0; run < runs.length; run++) {
+            runs[run] = ByteBuffer.allocateDirect(runLength(size, run) * Double.BYTES)
+                    .order(ByteOrder.nativeOrder()).asDoubleBuffer();
+        }
+        return new OutcomeBuffer(size, runs);
+    }
+
+    /**
+     * Maps a buffer from a file, which is created (or extended) as needed, and is left in place afterward
+     * @param file  the file to hold the outcomes
+     * @param size  the (positive) number of outcomes to store
+     * @throws IllegalArgumentException if <code>size</code> is not positive
+     * @throws IOException if the file can't be created or mapped
+     * @return      a buffer of <code>size</code> outcomes backed by <code>file</code>
+     */
+    public static OutcomeBuffer map(Path file, long size) throws IOException {
+        return map(file, size, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Maps a buffer from a new temporary file, which is deleted once it's mapped (on systems that allow it; the
+     * space is reclaimed once the buffer is garbage collected), so nothing is left behind
+     * @param size  the (positive) number of outcomes to store
+     * @throws IllegalArgumentException if <code>size</code> is not positive
+     * @throws IOException if the file can't be created or mapped
+     * @return      a buffer of <code>size</code> outcomes (initially 0) backed by a temporary file
+     */
+    public static OutcomeBuffer mapTempFile(long size) throws IOException {
+        Path file = Files.createTempFile("outcomes", ".bin");
+        return map(file, size, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.DELETE_ON_CLOSE);
+    }
+
+    private static OutcomeBuffer map(Path file, long size, StandardOpenOption... options) throws IOException {
+        DoubleBuffer[] runs = new DoubleBuffer[runs(size)];
+        // (a mapping stays valid after its channel is closed)
+        try (FileChannel channel = FileChannel.open(file, options)) {
+            for (int run = 0; run < runs.length; run++) {
+                runs[run] = channel.map(FileChannel.MapMode.READ_WRITE, (long) run * RUN_SIZE * Double.BYTES,
+                        (long) runLength(size, run) * Double.BYTES).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+            }
+        }
+        return new OutcomeBuffer(size, runs);
+    }
+
+    /**
+     * @param size  a (positive) number of outcomes
+     * @throws IllegalArgumentException if <code>size</code> is not positive, or needs more runs than fit in an array
+     * @return      the number of runs needed to hold them
+     */
+    private static int runs(long size) {
+        if (size <= 0) throw new IllegalArgumentException("size must be positive");
+        long runs = (size + RUN_SIZE - 1) / RUN_SIZE;
+        if (runs > Integer.MAX_VALUE) throw new IllegalArgumentException("size is too large");
+        return (int) runs;
+    }
+
+    /**
+     * @return  the number of outcomes in run <code>run</code> (<code>RUN_SIZE</code>, except perhaps for the last)
+     */
+    private static int runLength(long size, int run) {
+        return (int) Math.min(RUN_SIZE, size - (long) run * RUN_SIZE);
+    }
+
+    /**
+     * @return the number of outcomes
+     */
+    public long size() { return size; }
+
+    /**
+     * @return the number of runs the outcomes are held in
+     */
+    public int getRuns() { return runs.length; }
+
+    /**
+     * @param run   a run
+     * @return      the number of outcomes in that run
+     */
+    public int getRunLength(int run) { return runs[run].capacity(); }
+
+    /**
+     * @param index an index in the interval <em>[0, size())</em>
+     * @return      the outcome at <code>index</code>
+     */
+    public double get(long index) {
+        return runs[(int) (index / RUN_SIZE)].get((int) (index % RUN_SIZE));
+    }
+
+    /**
+     * @param index an index in the interval <em>[0, size())</em>
+     * @param value the outcome to store at <code>index</code>
+     */
+    public void set(long index, double value) {
+        runs[(int) (index / RUN_SIZE)].put((int) (index % RUN_SIZE), value);
+    }
+
+    /**
+     * Copies outcomes into the buffer
+     * @param index     the index of the first outcome to store, which must not be in a different run from the last
+     *                  (e.g., the first trial of a block)
+     * @param values    the outcomes to store
+     * @param length    the number of outcomes to store
+     */
+    public void put(long index, double[] values, int length) {
+        runs[(int) (index / RUN_SIZE)].put((int) (index % RUN_SIZE), values, 0, length);
+    }
+
+    /**
+     * @param run   a run
+     * @return      that run's outcomes, as a buffer (sharing this one's storage) with its own position and limit
+     */
+    DoubleBuffer getRun(int run) { return runs[run].duplicate(); }
+}
@@ -0,0 +1,72 @@
+/**
+ * The statistics that the reports (<code>MonteCarloSimulation.toString()</code>, <code>toHtmlString()</code>, and
+ * <code>TrsHistogram</code>) need from a distribution of trial outcomes.
+ *
+ * @author Charlie Barnes
+ */
+public interface OutcomeSummary {
+    /**
+     * @return the number of trials summarized
+     */
+    long size();
+
+    double mean();
+
+    /**
+     * @return  the number of independent trials whose mean would be as precise as the mean of these outcomes
+     *          (which is <code>size()</code>, unless the trials were not independent)
+     */
+    default double effectiveSampleSize() {
+        return size();
+    }
+
+    /**
+     * @return the corrected sample standard deviation of the outcomes
+     */
+    double sd();
+
+    double min();
+    double max();
+
+    /**
+     * @param percentile    a <code>Double</code> value in the interval <em>[0,1]</em>
+     * @throws IllegalArgumentException    if percentile is less than 0 or greater than 1
+     * @return              the <em>100*percentile</em>th percentile outcome, as a <code>double</code>
+     */
+    double percentile(double percentile);
+
+    default double median() {
+        return percentile(0.5);
+    }
+
+    /**
+     * @param threshold a <code>double</code>
+     * @return          the number of outcomes that are strictly less than <code>threshold</code>
+     */
+    long countBelow(double threshold);
+
+    /**
+     * @param threshold a <code>double</code>
+     * @return          the (<code>double</code>) proportion of outcomes that are strictly less than
+     *                  <code>threshold</code>
+     */
+    default double percentBelow(double threshold) {
+        return (double) countBelow(threshold) / size();
+    }
+
+    /**
+     * @param confidenceLevel   a <code>double</code> in the interval <em>[0,1)</em>
+     * @throws IllegalArgumentException if <code>confidenceLevel</code> is less than 0 or at least 1
+     * @return the margin of error of the mean at <code>confidenceLevel</code>, as a <code>double</code>
+     */
+    default double getMarginOfError(double confidenceLevel) {
+        return Statistics.getZ(confidenceLevel) * sd() / Math.sqrt(effectiveSampleSize());
+    }
+
+    /**
+     * @param factor    a positive <code>double</code>
+     * @throws IllegalArgumentException if <code>factor</code> is not positive
+     * @return  a summary of these outcomes with every outcome multiplied by <code>factor</code>
+     */
+    OutcomeSummary scaledBy(double factor);
+}
@@ -0,0 +1,137 @@
+/**
+ * A mergeable, fixed-size quantile sketch for non-negative data with a guaranteed relative error, in the style of
+ * DDSketch (Masson, Rim, and Lee, 2019).
+ * <p>
+ * Positive values are counted in logarithmically spaced buckets: bucket <em>i</em> holds values in
+ * <em>(gamma^(i-1), gamma^i]</em>, where <em>gamma = (1 + alpha) / (1 - alpha)</em>. Any value returned for a
+ * quantile is therefore within a factor of <em>1 +/- alpha</em> of a sample value of that rank. Zeros are counted
+ * exactly. Values below <code>MIN_VALUE</code> are counted in the lowest bucket, and values above
+ * <code>MAX_VALUE</code> in the highest (both bounds are far outside any TDF balance this tool simulates).
+ * <p>
+ * Memory depends only on <code>alpha</code>, never on the number of values added. Two sketches with the same
+ * <code>alpha</code> merge by adding their bucket counts, so merging is exact and order-independent.
+ *
+ * @author Charlie Barnes
+ */
+public class QuantileSketch {
+    public static final double MIN_VALUE = 1e-2;
+    public static final double MAX_VALUE = 1e13;
+    public static final double DEFAULT_RELATIVE_ACCURACY = .005;
+
+    private final double alpha;
+    private final double logGamma;
+    private final int minIndex;
+    private final long[] counts;
+    private long zeroCount;
+    private long count;
+
+    /**
+     * Class constructor
+     * @param alpha the relative accuracy, a <code>double</code> in the interval <em>(0,1)</em>
+     * @throws IllegalArgumentException if <code>alpha</code> is not in <em>(0,1)</em>
+     */
+    public QuantileSketch(double alpha) {
+        if (!(alpha > 0 && alpha < 1)) throw new IllegalArgumentException("alpha must be between 0 and 1, exclusive");
+        this.alpha = alpha;
+        logGamma = Math.log((1 + alpha) / (1 - alpha));
+        minIndex = index(MIN_VALUE);
+        counts = new long[index(MAX_VALUE) - minIndex + 1];
+    }
+
+    public QuantileSketch() {
+        this(DEFAULT_RELATIVE_ACCURACY);
+    }
+
+    public double getRelativeAccuracy() { return alpha; }
+    public long getCount() { return count; }
+
+    private int index(double value) {
+        return (int) Math.ceil(Math.log(value) / logGamma);
+    }
+
+    /**
+     * @return the value that represents every value in bucket <code>i</code> (relative to <code>minIndex</code>)
+     */
+    private double representative(int i) {
+        // 2 * gamma^i / (gamma + 1), which is within alpha (relatively) of every value in the bucket
+        return Math.exp((i + minIndex) * logGamma) * (1 - alpha);
+    }
+
+    /**
+     * @param value a non-negative <code>double</code>
+     * @throws IllegalArgumentException if <code>value</code> is negative or NaN
+     */
+    public void add(double value) {
+        if (!(value >= 0)) throw new IllegalArgumentException("value must be non-negative");
+        count++;
+        if (value == 0) {
+            zeroCount++;
+            return;
+        }
+        int i = index(Math.min(Math.max(value, MIN_VALUE), MAX_VALUE)) - minIndex;
+        counts[Math.min(Math.max(i, 0), counts.length - 1)]++;
+    }
+
+    /**
+     * Adds every count in <code>other</code> to this sketch
+     * @param other a <code>QuantileSketch</code> with the same relative accuracy
+     * @throws IllegalArgumentException if the sketches' relative accuracies differ
+     */
+    public void merge(QuantileSketch other) {
+        if (other.alpha != alpha) throw new IllegalArgumentException("sketches must have the same relative accuracy");
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        zeroCount += other.zeroCount;
+        count += other.count;
+    }
+
+    /**
+     * @param rank  an index in the interval <em>[0, count)</em> into the (conceptually) sorted values
+     * @return      an estimate, within relative error <code>alpha</code>, of the <code>rank</code>th smallest value
+     */
+    public double valueAtRank(long rank) {
+        if (rank < zeroCount) {
+            return 0;
+        }
+        long seen = zeroCount;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (rank < seen) {
+                return representative(i);
+            }
+        }
+        return representative(counts.length - 1);
+    }
+
+    /**
+     * Uses the same definition of percentile as <code>Statistics.percentile</code>
+     * @param percentile    a <code>Double</code> value in the interval <em>[0,1]</em>
+     * @throws IllegalArgumentException    if percentile is less than 0 or greater than 1
+     * @return              an estimate, within relative error <code>alpha</code>, of the <em>100*percentile</em>th
+     *                      percentile value
+     */
+    public double percentile(double percentile) {
+        if (percentile < 0 || percentile > 1) {
+            throw new IllegalArgumentException("percentile must be between 0 and 1, inclusive");
+        }
+        double doubleIndex = percentile * (count - 1);
+        return (valueAtRank((long) Math.floor(doubleIndex)) + valueAtRank((long) Math.ceil(doubleIndex))) / 2;
+    }
+
+    /**
+     * @param threshold a <code>double</code>
+     * @return          an estimate of the number of values strictly less than <code>threshold</code>, which is
+     *                  exact except for values within relative error <code>alpha</code> of <code>threshold</code>
+     */
+    public long countBelow(double threshold) {
+        if (threshold <= 0) {
+            return 0;
+        }
+        long below = zeroCount;
+        for (int i = 0; i < counts.length && representative(i) < threshold; i++) {
+            below += counts[i];
+        }
+        return below;
+    }
+}
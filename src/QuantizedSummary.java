@@ -0,0 +1,243 @@
+import java.util.Arrays;
+
+/**
+ * An immutable summary of trial outcomes stored in a compact encoding rather than as <code>double</code>s: as
+ * <code>float</code>s (4 bytes per outcome) or as 16-bit codes of their logarithms (2 bytes per outcome), each with
+ * a known bound on the relative error of a stored outcome (see <code>Encoding</code>). A simulation that keeps only
+ * this summary (see <code>MonteCarloSimulation.quantized</code>) takes 4 or 2 bytes per trial, rather than the 16 of
+ * its TDF balances plus their sorted copy, and sorts and searches 2 to 4 times less memory.
+ * <p>
+ * Error bounds, compared to a <code>DistributionSummary</code> of the same outcomes:
+ * <ul>
+ *     <li>size, mean, standard deviation, and margin of error are exact (up to floating-point rounding), since
+ *     they're computed from the outcomes before they're encoded;</li>
+ *     <li>percentiles, min, and max are within the encoding's relative error bound;</li>
+ *     <li><code>countBelow</code> and <code>percentBelow</code> count the stored outcomes below the threshold, so
+ *     they can miss (or add) only outcomes within the relative error bound of the threshold.</li>
+ * </ul>
+ * Encoding is monotone (a larger outcome never gets a smaller code), so sorting the codes sorts the outcomes.
+ *
+ * @author Charlie Barnes
+ */
+public class QuantizedSummary implements OutcomeSummary {
+    // the smallest positive outcome that a LOG16 code represents (smaller outcomes are stored as 0)
+    public static final double LOG16_MIN = 0.01;
+    // the difference between the natural logarithms of the outcomes represented by consecutive LOG16 codes
+    public static final double LOG16_STEP = 1.0 / 2048;
+    // outcomes below this are nearer 0 than LOG16_MIN (in log terms), and are stored as 0
+    private static final double LOG16_ZERO_BELOW = LOG16_MIN * Math.exp(-LOG16_STEP / 2);
+
+    /**
+     * How each outcome is stored
+     */
+    public enum Encoding {
+        /**
+         * As a <code>float</code> (4 bytes): the relative error of an outcome of at least
+         * <code>Float.MIN_NORMAL</code> is at most <em>2<sup>-24</sup></em> (about 6e-8)
+         */
+        FLOAT("floats", Math.scalb(1.0, -24)),
+        /**
+         * As a 16-bit code (2 bytes): 0 for 0 (or any outcome under <code>LOG16_MIN</code>, i.e. under a cent), and
+         * otherwise <em>c</em> for the outcome <code>LOG16_MIN</code> <em>* exp((c - 1) * </em><code>LOG16_STEP</code>
+         * <em>)</em> nearest in log terms. The relative error of an outcome of at least <code>LOG16_MIN</code> is at
+         * most <em>exp(</em><code>LOG16_STEP</code><em> / 2) - 1</em> (about 0.024%), up to about 7.9e11.
+         */
+        LOG16("16-bit log codes", Math.expm1(LOG16_STEP / 2));
+
+        private final String description;
+        private final double relativeErrorBound;
+
+        Encoding(String description, double relativeErrorBound) {
+            this.description = description;
+            this.relativeErrorBound = relativeErrorBound;
+        }
+
+        /**
+         * @return  a short description of the encoding, for the reports (e.g., "floats")
+         */
+        public String getDescription() { return description; }
+
+        /**
+         * @return  the most that any stored outcome (in the encoding's range) differs from the actual outcome, as a
+         *          fraction of the actual outcome
+         */
+        public double getRelativeErrorBound() { return relativeErrorBound; }
+    }
+
+    /**
+     * The encoded outcomes: in trial order while they're being stored, and sorted once the summary is built. Each
+     * outcome is written by a single thread, so several threads can store outcomes at once (at different indices).
+     */
+    static class Store {
+        private final Encoding encoding;
+        private final float[] floats;
+        private final char[] codes;
+
+        /**
+         * @param encoding  how to store the outcomes
+         * @param size      the (positive) number of outcomes
+         */
+        Store(Encoding encoding, int size) {
+            this.encoding = encoding;
+            floats = encoding == Encoding.FLOAT ? new float[size] : null;
+            codes = encoding == Encoding.LOG16 ? new char[size] : null;
+        }
+
+        int size() { return floats != null ? floats.length : codes.length; }
+
+        /**
+         * @param index     an index in the interval <em>[0, size())</em>
+         * @param outcome   the outcome to store at <code>index</code>
+         * @throws IllegalArgumentException if <code>outcome</code> is out of the encoding's range (for
+         *                                  <code>FLOAT</code>, not finite as a <code>float</code>; for
+         *                                  <code>LOG16</code>, negative, NaN, or over about 7.9e11)
+         */
+        void set(int index, double outcome) {
+            switch (encoding) {
+                case FLOAT -> {
+                    if (!(Math.abs(outcome) <= Float.MAX_VALUE)) {
+                        throw new IllegalArgumentException("outcome is out of range for FLOAT: " + outcome);
+                    }
+                    floats[index] = (float) outcome;
+                }
+                case LOG16 -> {
+                    if (!(outcome >= 0)) {
+                        throw new IllegalArgumentException("outcome is out of range for LOG16: " + outcome);
+                    }
+                    double code = outcome < LOG16_ZERO_BELOW ? 0
+                            : 1 + Math.rint(Math.log(outcome / LOG16_MIN) / LOG16_STEP);
+                    if (code > Character.MAX_VALUE) {
+                        throw new IllegalArgumentException("outcome is out of range for LOG16: " + outcome);
+                    }
+                    codes[index] = (char) code;
+                }
+            }
+        }
+
+        /**
+         * @param index an index in the interval <em>[0, size())</em>
+         * @return      the (decoded) outcome stored at <code>index</code>
+         */
+        double get(int index) {
+            if (floats != null) {
+                return floats[index];
+            }
+            int code = codes[index];
+            return code == 0 ? 0 : LOG16_MIN * Math.exp((code - 1) * LOG16_STEP);
+        }
+
+        /**
+         * Sorts the outcomes (floats in parallel, and codes by counting, which takes linear time)
+         */
+        void sort() {
+            if (floats != null) {
+                TrialScheduler.parallelSort(floats);
+            }
+            else {
+                Arrays.sort(codes);
+            }
+        }
+    }
+
+    private final Store sorted;
+    private final double scale;
+    private final double mean;
+    private final double sd;
+
+    /**
+     * Class constructor
+     * @param data      sample data, as a <code>double</code> array (which is not modified)
+     * @param encoding  how to store the data
+     * @throws IllegalArgumentException if <code>data</code> is empty, or has an entry out of the encoding's range
+     */
+    public QuantizedSummary(double[] data, Encoding encoding) {
+        if (data.length == 0) throw new IllegalArgumentException("data must be non-empty");
+        sorted = new Store(encoding, data.length);
+        for (int i = 0; i < data.length; i++) {
+            sorted.set(i, data[i]);
+        }
+        sorted.sort();
+        scale = 1;
+        mean = Statistics.mean(data);
+        sd = data.length > 1 ? Statistics.sd(data) : 0;
+    }
+
+    /**
+     * Class constructor, which sorts <code>store</code>
+     * @param store the encoded outcomes (which must not be modified afterward)
+     * @param mean  the mean of the (actual) outcomes
+     * @param sd    the corrected sample standard deviation of the (actual) outcomes
+     */
+    QuantizedSummary(Store store, double mean, double sd) {
+        store.sort();
+        this.sorted = store;
+        this.scale = 1;
+        this.mean = mean;
+        this.sd = sd;
+    }
+
+    private QuantizedSummary(Store sorted, double scale, double mean, double sd) {
+        this.sorted = sorted;
+        this.scale = scale;
+        this.mean = mean;
+        this.sd = sd;
+    }
+
+    /**
+     * @param factor    a positive <code>double</code>
+     * @throws IllegalArgumentException if <code>factor</code> is not positive
+     * @return  a summary of these outcomes with every outcome multiplied by <code>factor</code> (sharing the
+     *          encoded outcomes)
+     */
+    public QuantizedSummary scaledBy(double factor) {
+        if (!(factor > 0)) throw new IllegalArgumentException("factor must be positive");
+        return new QuantizedSummary(sorted, scale * factor, mean * factor, sd * factor);
+    }
+
+    /**
+     * @return  how the outcomes are stored
+     */
+    public Encoding getEncoding() { return sorted.encoding; }
+
+    public long size() { return sorted.size(); }
+    public double mean() { return mean; }
+    public double sd() { return sd; }
+    public double min() { return scale * sorted.get(0); }
+    public double max() { return scale * sorted.get(sorted.size() - 1); }
+
+    /**
+     * @param percentile    a <code>Double</code> value in the interval <em>[0,1]</em>
+     * @throws IllegalArgumentException    if percentile is less than 0 or greater than 1
+     * @return              the <em>100*percentile</em>th percentile of the stored outcomes, as a <code>double</code>
+     */
+    public double percentile(double percentile) {
+        if (percentile < 0 || percentile > 1) {
+            throw new IllegalArgumentException("percentile must be between 0 and 1, inclusive");
+        }
+        double doubleIndex = percentile * (sorted.size() - 1);
+        int indexBelow = (int) Math.floor(doubleIndex);
+        int indexAbove = (int) Math.ceil(doubleIndex);
+        return scale * (sorted.get(indexBelow) + sorted.get(indexAbove)) / 2;
+    }
+
+    /**
+     * @param threshold a <code>double</code>
+     * @return          the number of stored outcomes that are strictly less than <code>threshold</code>
+     */
+    public long countBelow(double threshold) {
+        // binary search for the first stored outcome that is at least threshold
+        double unscaled = threshold / scale;
+        int low = 0;
+        int high = sorted.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted.get(mid) < unscaled) {
+                low = mid + 1;
+            }
+            else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,77 @@
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator.SplittableGenerator;
+import java.util.random.RandomGeneratorFactory;
+
+/**
+ * The source of randomness for a <code>MonteCarloSimulation</code>: a seed from which statistically independent,
+ * individually addressable streams of a splittable generator can be handed out to worker threads.
+ * <p>
+ * Any <code>SplittableGenerator</code> algorithm available to <code>RandomGeneratorFactory</code> may be used
+ * (e.g., "L64X128MixRandom", "L64X256MixRandom", "SplittableRandom"). The same algorithm, seed, and stream
+ * index always produce the same stream.
+ *
+ * @author Charlie Barnes
+ */
+public class RandomStreams {
+    public static final String DEFAULT_ALGORITHM = "L64X128MixRandom";
+
+    private final String algorithm;
+    private final long seed;
+    private final RandomGeneratorFactory<?> factory;
+
+    /**
+     * Class constructor
+     * @param algorithm the name of a splittable <code>RandomGenerator</code> algorithm
+     * @param seed      the seed, as a <code>long</code>
+     * @throws IllegalArgumentException if <code>algorithm</code> is unknown or not splittable
+     */
+    public RandomStreams(String algorithm, long seed) {
+        factory = RandomGeneratorFactory.of(algorithm);
+        if (!factory.isSplittable()) {
+            throw new IllegalArgumentException(algorithm + " is not a splittable random number generator");
+        }
+        this.algorithm = algorithm;
+        this.seed = seed;
+    }
+
+    /**
+     * Class constructor
+     * @param seed  the seed, as a <code>long</code>
+     */
+    public RandomStreams(long seed) {
+        this(DEFAULT_ALGORITHM, seed);
+    }
+
+    public String getAlgorithm() { return algorithm; }
+    public long getSeed() { return seed; }
+
+    /**
+     * Returns the <code>index</code>th stream of this seed. The stream depends only on <code>algorithm</code>,
+     * <code>seed</code>, and <code>index</code> (not on which thread asks for it, or in what order), so work that
+     * is always assigned the same stream index is reproducible regardless of how it is scheduled.
+     * @param index the stream number, as a <code>long</code>
+     * @return      a generator seeded from the pair (<code>seed</code>, <code>index</code>)
+     */
+    public SplittableGenerator stream(long index) {
+        return (SplittableGenerator) factory.create(mix(seed, index));
+    }
+
+    /**
+     * Hashes a (seed, index) pair to a single well-mixed <code>long</code> (Stafford's variant 13 of the
+     * MurmurHash3 finalizer, as used by SplitMix64), so that consecutive indices give unrelated seeds.
+     */
+    private static long mix(long seed, long index) {
+        long z = seed + (index + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * @return a fresh seed for a run whose seed wasn't specified
+     */
+    public static long newSeed() {
+        return ThreadLocalRandom.current().nextLong();
+    }
+
+}
@@ -0,0 +1,83 @@
+import java.util.random.RandomGenerator;
+
+/**
+ * Annual returns driven by a hidden two-state market regime (calm or turbulent) that persists from year to year,
+ * as a Markov chain. In the turbulent regime, returns are lower and more volatile, so bad years cluster, which
+ * widens the spread of long-run outcomes compared to independent years.
+ * <p>
+ * A regime shifts each year's mean by some number of that year's standard deviations and scales its standard
+ * deviation. The turbulent regime's shift and scale are given; the calm regime's are solved for so that, averaged
+ * over the chain's stationary distribution, each year keeps the <code>ReturnSchedule</code>'s mean and standard
+ * deviation. Each trial starts in a regime drawn from the stationary distribution.
+ *
+ * @author Charlie Barnes
+ */
+public class RegimeSwitchingReturnModel implements ReturnModel {
+    // a turbulent year is followed by a calm one with probability .4 (so turbulence lasts 2.5 years, on average),
+    // a calm year by a turbulent one with probability .1 (so 20% of years are turbulent); turbulent years average
+    // a standard deviation below the mean, and are 1.5 times as volatile
+    public static final RegimeSwitchingReturnModel DEFAULT = new RegimeSwitchingReturnModel(.1, .4, -1, 1.5);
+
+    private final double calmToTurbulent;
+    private final double turbulentToCalm;
+    // the stationary probability of the turbulent regime
+    private final double turbulentProbability;
+    // each regime's shift of the mean (in standard deviations) and scale of the standard deviation
+    private final double calmShift;
+    private final double calmScale;
+    private final double turbulentShift;
+    private final double turbulentScale;
+
+    /**
+     * Class constructor
+     * @param calmToTurbulent   the probability that a calm year is followed by a turbulent one, in <em>(0,1]</em>
+     * @param turbulentToCalm   the probability that a turbulent year is followed by a calm one, in <em>(0,1]</em>
+     * @param turbulentShift    the shift of a turbulent year's mean return, in standard deviations (e.g., -1)
+     * @param turbulentScale    the (positive) factor by which a turbulent year's standard deviation is scaled
+     * @throws IllegalArgumentException if a probability is not in <em>(0,1]</em>, if <code>turbulentScale</code>
+     *                                  is not positive, or if the turbulent regime alone accounts for all of
+     *                                  the variance, leaving none for the calm regime
+     */
+    public RegimeSwitchingReturnModel(double calmToTurbulent, double turbulentToCalm, double turbulentShift,
+                                      double turbulentScale) {
+        if (!(calmToTurbulent > 0 && calmToTurbulent <= 1) || !(turbulentToCalm > 0 && turbulentToCalm <= 1)) {
+            throw new IllegalArgumentException("transition probabilities must be in (0,1]");
+        }
+        if (!(turbulentScale > 0)) throw new IllegalArgumentException("turbulentScale must be positive");
+        this.calmToTurbulent = calmToTurbulent;
+        this.turbulentToCalm = turbulentToCalm;
+        this.turbulentShift = turbulentShift;
+        this.turbulentScale = turbulentScale;
+        turbulentProbability = calmToTurbulent / (calmToTurbulent + turbulentToCalm);
+        double calmProbability = 1 - turbulentProbability;
+
+        // mean: calm * calmShift + turbulent * turbulentShift = 0
+        calmShift = -turbulentProbability * turbulentShift / calmProbability;
+        // variance: calm * (calmScale^2 + calmShift^2) + turbulent * (turbulentScale^2 + turbulentShift^2) = 1
+        double calmVariance = (1 - turbulentProbability * (turbulentScale * turbulentScale + turbulentShift * turbulentShift))
+                / calmProbability - calmShift * calmShift;
+        if (!(calmVariance > 0)) {
+            throw new IllegalArgumentException("the turbulent regime leaves no variance for the calm regime");
+        }
+        calmScale = Math.sqrt(calmVariance);
+    }
+
+    public void fillReturns(ReturnSchedule schedule, double[] returns, int trials, RandomGenerator rng) {
+        double[] means = schedule.getMeans();
+        double[] sds = schedule.getSds();
+        int years = means.length;
+        for (int trial = 0; trial < trials; trial++) {
+            boolean turbulent = rng.nextDouble() < turbulentProbability;
+            for (int year = 0; year < years; year++) {
+                double shift = turbulent ? turbulentShift : calmShift;
+                double scale = turbulent ? turbulentScale : calmScale;
+                returns[year * trials + trial] = means[year] + sds[year] * (shift + scale * ZigguratNormal.sample(rng));
+                turbulent = rng.nextDouble() < (turbulent ? 1 - turbulentToCalm : calmToTurbulent);
+            }
+        }
+    }
+
+    public String getDescription() {
+        return String.format("two-regime returns (%.0f%% of years turbulent)", 100 * turbulentProbability);
+    }
+}
@@ -0,0 +1,223 @@
+import java.util.random.RandomGenerator.SplittableGenerator;
+
+/**
+ * A comparison of resigning after each of a range of years, from a single set of simulated return paths.
+ * <p>
+ * Every trial draws one path of annual returns by age, from the member's next birthday till the latest
+ * retirement age among the options. Resigning after <em>k</em> years invests the balance at resignation from age
+ * <em>currentAge + k + 1</em> through retirement, so each option's growth factor is a sub-product of that same
+ * path (found in O(1) per option from the path's running products). The whole table costs about as much as one
+ * simulation, and since every option sees the same returns at the same ages (common random numbers), the
+ * differences between options are not simulation noise.
+ *
+ * @author Charlie Barnes
+ */
+public class ResignationSweep {
+    private final int trials;
+    private final int fromYears;
+    private final int[] retirementAges;
+    private final int[] normalBenefits;
+    private final int[] principals;
+    // growthFactors[option][trial], for option = yearsTillResignation - fromYears
+    private final double[][] growthFactors;
+    private final DistributionSummary[] summaries;
+
+    /**
+     * Class constructor
+     * @param trials        the (positive) number of trials (return paths)
+     * @param member        a <code>TrsMember</code> instance (which isn't modified: the options are set up on a
+     *                      copy of its <code>TrsAccount</code>)
+     * @param fromYears     the fewest years till resignation to consider
+     * @param toYears       the most years till resignation to consider, at least <code>fromYears</code>
+     * @param randomStreams the source of randomness for the trials
+     * @throws IllegalArgumentException if <code>toYears</code> is less than <code>fromYears</code>, or either is
+     *                                  not a valid number of years till resignation for the member
+     */
+    public ResignationSweep(int trials, TrsMember member, int fromYears, int toYears, RandomStreams randomStreams) {
+        if (toYears < fromYears) throw new IllegalArgumentException("toYears must be at least fromYears");
+        this.trials = trials;
+        this.fromYears = fromYears;
+        int options = toYears - fromYears + 1;
+        retirementAges = new int[options];
+        normalBenefits = new int[options];
+        principals = new int[options];
+
+        // each option's annuity, principal, and years of investment (as for new ReturnSchedule(account)), worked
+        // out on a copy of the member's account, so the member's own years till resignation (and the salaries and
+        // balance derived from them) are never touched
+        TrsAccount account = copyOf(member.getTrsAccount());
+        int currentAge = account.getCurrentAge();
+        int[] firstYears = new int[options];
+        int[] lastYears = new int[options];
+        for (int option = 0; option < options; option++) {
+            account.setYearsTillResignation(fromYears + option);
+            account.setFutureSalariesTillResignation();
+            retirementAges[option] = account.getRetirementAge();
+            normalBenefits[option] = account.getNormalBenefit();
+            principals[option] = account.getAccountBalanceAtResignation();
+            ReturnSchedule schedule = new ReturnSchedule(account);
+            firstYears[option] = schedule.getFirstYear();
+            lastYears[option] = schedule.getLastYear();
+        }
+
+        // the shared path runs from age currentAge + 1 through the latest retirement
+        int lastAge = currentAge;
+        for (int option = 0; option < options; option++) {
+            lastAge = Math.max(lastAge, lastYears[option]);
+        }
+        ReturnSchedule path = new ReturnSchedule(currentAge + 1, lastAge);
+        double[] means = path.getMeans();
+        double[] sds = path.getSds();
+        int years = means.length;
+
+        growthFactors = new double[options][trials];
+        int blockSize = MonteCarloSimulation.BLOCK_SIZE;
+        TrialScheduler.forEachBlock(0, (int) ((trials + (long) blockSize - 1) / blockSize), () -> new Workspace(years),
+                (workspace, block) -> {
+            SplittableGenerator rng = randomStreams.stream(block);
+            double[] products = workspace.products;
+            int[] lastNonPositive = workspace.lastNonPositive;
+            int blockEnd = (int) Math.min(trials, (block + 1L) * blockSize);
+            for (int trial = block * blockSize; trial < blockEnd; trial++) {
+                products[0] = 1;
+                lastNonPositive[0] = -1;
+                for (int year = 0; year < years; year++) {
+                    double factor = 1 + means[year] + sds[year] * ZigguratNormal.sample(rng)
+                            - ReturnSchedule.EXPENSE_RATIO;
+                    products[year + 1] = factor > 0 ? products[year] * factor : products[year];
+                    lastNonPositive[year + 1] = factor > 0 ? lastNonPositive[year] : year;
+                }
+                for (int option = 0; option < options; option++) {
+                    // this option invests from path index firstYear - (currentAge + 1) through lastYear's
+                    int start = firstYears[option] - currentAge - 1;
+                    int end = Math.max(start, lastYears[option] - currentAge);
+                    // Freeze any trials that end up with a non-positive TDF value at 0.
+                    growthFactors[option][trial] = lastNonPositive[end] >= start ? 0
+                            : products[end] / products[start];
+                }
+            }
+        });
+
+        summaries = new DistributionSummary[options];
+    }
+
+    /**
+     * @return the fewest years till resignation considered
+     */
+    public int getFromYears() { return fromYears; }
+
+    /**
+     * @return the most years till resignation considered
+     */
+    public int getToYears() { return fromYears + principals.length - 1; }
+
+    /**
+     * @param yearsTillResignation  one of the years till resignation considered
+     * @throws IllegalArgumentException if <code>yearsTillResignation</code> wasn't considered
+     * @return                      the index of that option
+     */
+    private int option(int yearsTillResignation) {
+        if (yearsTillResignation < fromYears || yearsTillResignation > getToYears()) {
+            throw new IllegalArgumentException("yearsTillResignation must be between " + fromYears + " and " +
+                    getToYears());
+        }
+        return yearsTillResignation - fromYears;
+    }
+
+    public int getRetirementAge(int yearsTillResignation) { return retirementAges[option(yearsTillResignation)]; }
+    public int getNormalBenefit(int yearsTillResignation) { return normalBenefits[option(yearsTillResignation)]; }
+    public int getAccountBalanceAtResignation(int yearsTillResignation) { return principals[option(yearsTillResignation)]; }
+
+    /**
+     * @param yearsTillResignation  one of the years till resignation considered
+     * @return                      a new array (of size <code>trials</code>) of the TDF balances at retirement when
+     *                              resigning after <code>yearsTillResignation</code> years, indexed by trial number
+     */
+    public double[] getTdfBalances(int yearsTillResignation) {
+        int option = option(yearsTillResignation);
+        double[] tdfBalances = new double[trials];
+        for (int trial = 0; trial < trials; trial++) {
+            tdfBalances[trial] = principals[option] * growthFactors[option][trial];
+        }
+        return tdfBalances;
+    }
+
+    /**
+     * @param yearsTillResignation  one of the years till resignation considered
+     * @return                      a summary of the distribution of TDF balances at retirement when resigning
+     *                              after <code>yearsTillResignation</code> years
+     */
+    public synchronized DistributionSummary getSummary(int yearsTillResignation) {
+        int option = option(yearsTillResignation);
+        if (summaries[option] == null) {
+            summaries[option] = new DistributionSummary(getTdfBalances(yearsTillResignation));
+        }
+        return summaries[option];
+    }
+
+    /**
+     * @param withdrawalRates   the withdrawal rates at which to report P(earning < TRS)
+     * @return                  a string of each option's retirement age, TRS annuity, median initial withdrawal
+     *                          (at the first of <code>withdrawalRates</code>) and P(earning < TRS) at each of
+     *                          <code>withdrawalRates</code>, intended to be printed to the console
+     */
+    public String toString(double[] withdrawalRates) {
+        int width = 14;
+        String sf = "%" + width + "s";
+        String str = String.format(sf, "resign in") + String.format(sf, "retire at") + String.format(sf, "TRS annuity") +
+                String.format(sf, "median @" + MonteCarloSimulation.formatRate(withdrawalRates[0]));
+        for (double rate : withdrawalRates) {
+            str += String.format(sf, "P(<TRS) @" + MonteCarloSimulation.formatRate(rate));
+        }
+        for (int years = fromYears; years <= getToYears(); years++) {
+            DistributionSummary summary = getSummary(years);
+            str += "\n" + String.format(sf, years + (years == 1 ? " year" : " years")) +
+                    String.format(sf, getRetirementAge(years)) +
+                    String.format(sf, "$" + String.format("%,d", getNormalBenefit(years))) +
+                    String.format(sf, "$" + String.format("%,d", Math.round(withdrawalRates[0] * summary.median())));
+            for (double rate : withdrawalRates) {
+                str += String.format("%" + (width - 1) + ".1f%%", 100 * summary.percentBelow(getNormalBenefit(years) / rate));
+            }
+        }
+        return str;
+    }
+
+    /**
+     * @return  a string summarizing the sweep at <code>MonteCarloSimulation.WITHDRAWAL_RATES</code>, intended to
+     *          be printed to the console
+     */
+    public String toString() {
+        return toString(MonteCarloSimulation.WITHDRAWAL_RATES);
+    }
+
+    /**
+     * @param account   a <code>TrsAccount</code>
+     * @return          a new account with the same age, tier, years of service, highest salaries, current balance,
+     *                  and years till resignation as <code>account</code>
+     */
+    private static TrsAccount copyOf(TrsAccount account) {
+        TrsAccount copy = new TrsAccount(account.getCurrentAge());
+        copy.setTier(account.getTier());
+        copy.setYearsOfService(account.getYearsOfService());
+        copy.setHighestSalaries(account.getHighestSalaries());
+        copy.setAccountBalance(account.getAccountBalance());
+        copy.setYearsTillResignation(account.getYearsTillResignation());
+        return copy;
+    }
+
+    /**
+     * The scratch space of one task of the sweep (see <code>TrialScheduler.forEachBlock</code>), reused for each
+     * trial of its blocks: <code>products[i]</code> is the product of the shared path's first <em>i</em> growth
+     * factors (skipping non-positive ones), and <code>lastNonPositive[i]</code> the index of the last non-positive
+     * one among them (or -1)
+     */
+    private static final class Workspace {
+        final double[] products;
+        final int[] lastNonPositive;
+
+        Workspace(int years) {
+            products = new double[years + 1];
+            lastNonPositive = new int[years + 1];
+        }
+    }
+}
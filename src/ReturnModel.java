@@ -0,0 +1,31 @@
+import java.util.random.RandomGenerator;
+
+/**
+ * A model of the annual TDF returns a <code>MonteCarloSimulation</code> draws for its trials.
+ * <p>
+ * A model fills a whole chunk of trials' returns per call (rather than returning one draw per call), so the loop
+ * over trials and years is inside each model's own <code>fillReturns</code>, where the JIT sees a single
+ * implementation and can inline and unroll it. The only virtual call is once per chunk. The returns are laid out
+ * year by year (all the chunk's trials' returns for the first year, then for the second, ...), so that the trials
+ * can then be compounded a year at a time across contiguous lanes (see <code>MonteCarloSimulation.compound</code>).
+ * Implementations must be safe to use from several threads at once, each with its own <code>RandomGenerator</code>.
+ *
+ * @author Charlie Barnes
+ */
+public interface ReturnModel {
+    /**
+     * Fills in the annual returns (before expenses) of a chunk of trials
+     * @param schedule  the years of investment, with each year's mean return, standard deviation, and stock
+     *                  allocation
+     * @param returns   an array of length at least <code>trials * schedule.getYears()</code>; trial <em>t</em>'s
+     *                  return in year <em>y</em> is written to index <em>y * trials + t</em>
+     * @param trials    the number of trials in the chunk
+     * @param rng       the source of randomness for the chunk
+     */
+    void fillReturns(ReturnSchedule schedule, double[] returns, int trials, RandomGenerator rng);
+
+    /**
+     * @return  a short description of the model, for the reports (e.g., "normal returns")
+     */
+    String getDescription();
+}
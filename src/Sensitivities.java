@@ -0,0 +1,190 @@
+import java.util.Arrays;
+
+/**
+ * The sensitivities ("Greeks") of a simulation's outcome distribution to its main assumptions, estimated from the
+ * same trials as the outcomes themselves (see <code>MonteCarloSimulation.withSensitivities()</code>), in place of
+ * rerunning the simulation with each assumption nudged.
+ * <p>
+ * Two estimators are used:
+ * <ul>
+ *     <li>Pathwise: each trial's outcome is a smooth function of the assumptions, so the simulation also records
+ *     its derivative with respect to each one. The derivative of a percentile is the average derivative of the
+ *     trials whose outcomes lie near that percentile (Hong, 2009).</li>
+ *     <li>Likelihood ratio: a probability like P(earning < TRS) jumps as trials cross the threshold, so pathwise
+ *     derivatives (all 0 or undefined) don't work. Instead, each trial records the derivative of the log density of
+ *     its random returns with respect to each assumption (its score), and the derivative of the probability is the
+ *     average of <em>(indicator - probability) * score</em>.</li>
+ * </ul>
+ * <code>TRS_INTEREST</code> only scales the principal, so its sensitivities are exact for percentiles, and for
+ * probabilities come from the density of outcomes at the threshold.
+ *
+ * @author Charlie Barnes
+ */
+public class Sensitivities {
+    /**
+     * The assumptions whose effects are estimated. Each is a rate, and each sensitivity is per unit of that rate
+     * (so multiply by 0.01 for the effect of a one-percentage-point change).
+     */
+    public enum Parameter {
+        /** a shift of every year's mean annual return */
+        MEAN_RETURN,
+        /** a shift of every year's standard deviation of annual returns */
+        VOLATILITY,
+        /** a change in <code>TrsAccount.TRS_INTEREST</code>, the interest credited to the TRS account till resignation */
+        TRS_INTEREST
+    }
+
+    // each trial's TDF balance, its pathwise derivatives and scores (by parameter ordinal), and the balances sorted
+    private final double[] tdfBalances;
+    private final double[][] derivatives;
+    private final double[][] scores;
+    private final double[] sorted;
+    // the relative derivative of the principal with respect to TRS_INTEREST
+    private final double principalElasticity;
+    // percentiles' derivatives average over the trials within this many ranks of the percentile
+    private final int window;
+
+    /**
+     * Class constructor
+     * @param tdfBalances           each trial's TDF balance at retirement
+     * @param meanDerivatives       each trial's derivative of its TDF balance with respect to the mean return shift
+     * @param volatilityDerivatives each trial's derivative of its TDF balance with respect to the volatility shift
+     * @param meanScores            each trial's derivative of the log density of its returns with respect to the
+     *                              mean return shift
+     * @param volatilityScores      each trial's derivative of the log density of its returns with respect to the
+     *                              volatility shift
+     * @param principalElasticity   the derivative of the principal with respect to <code>TRS_INTEREST</code>,
+     *                              divided by the principal
+     * @throws IllegalArgumentException if there are no trials, or the arrays' lengths differ
+     */
+    Sensitivities(double[] tdfBalances, double[] meanDerivatives, double[] volatilityDerivatives, double[] meanScores,
+                  double[] volatilityScores, double principalElasticity) {
+        int trials = tdfBalances.length;
+        if (trials == 0) throw new IllegalArgumentException("there must be at least one trial");
+        if (meanDerivatives.length != trials || volatilityDerivatives.length != trials || meanScores.length != trials
+                || volatilityScores.length != trials) {
+            throw new IllegalArgumentException("every array must have one entry per trial");
+        }
+        this.tdfBalances = tdfBalances;
+        derivatives = new double[][]{meanDerivatives, volatilityDerivatives};
+        scores = new double[][]{meanScores, volatilityScores};
+        // (only the balances are sorted; the trials near a percentile are found by value, in one pass)
+        sorted = tdfBalances.clone();
+        TrialScheduler.parallelSort(sorted);
+        this.principalElasticity = principalElasticity;
+        window = Math.max(1, (int) Math.sqrt(trials));
+    }
+
+    /**
+     * @param parameter     an assumption
+     * @param percentile    a <code>Double</code> value in the interval <em>[0,1]</em>
+     * @throws IllegalArgumentException    if percentile is less than 0 or greater than 1
+     * @return              the derivative of the <em>100*percentile</em>th percentile TDF balance with respect to
+     *                      <code>parameter</code>
+     */
+    public double getPercentileSensitivity(Parameter parameter, double percentile) {
+        if (percentile < 0 || percentile > 1) {
+            throw new IllegalArgumentException("percentile must be between 0 and 1, inclusive");
+        }
+        int rank = (int) Math.round(percentile * (sorted.length - 1));
+        if (parameter == Parameter.TRS_INTEREST) {
+            return sorted[rank] * principalElasticity;
+        }
+        // average the pathwise derivatives of the trials near the percentile
+        double low = sorted[Math.max(0, rank - window)];
+        double high = sorted[Math.min(sorted.length - 1, rank + window)];
+        double[] trialDerivatives = derivatives[parameter.ordinal()];
+        double sum = 0;
+        int count = 0;
+        for (int trial = 0; trial < tdfBalances.length; trial++) {
+            if (tdfBalances[trial] >= low && tdfBalances[trial] <= high) {
+                sum += trialDerivatives[trial];
+                count++;
+            }
+        }
+        return sum / count;
+    }
+
+    /**
+     * @param parameter an assumption
+     * @return          the derivative of the median TDF balance with respect to <code>parameter</code>
+     */
+    public double getMedianSensitivity(Parameter parameter) {
+        return getPercentileSensitivity(parameter, .5);
+    }
+
+    /**
+     * @param parameter an assumption
+     * @param threshold a TDF balance
+     * @return          the derivative of the probability that a trial's TDF balance is below <code>threshold</code>
+     *                  with respect to <code>parameter</code>
+     */
+    public double getProbabilityBelowSensitivity(Parameter parameter, double threshold) {
+        int below = countBelow(threshold);
+        if (parameter == Parameter.TRS_INTEREST) {
+            // P(balance < threshold) changes at the density of balances there, times how fast the balances near
+            // the threshold move (threshold * principalElasticity), estimated from the trials within the window
+            int from = Math.max(0, below - window);
+            int to = Math.min(sorted.length - 1, below + window);
+            double spread = sorted[to] - sorted[from];
+            double density = spread > 0 ? (double) (to - from) / sorted.length / spread : 0;
+            return -density * threshold * principalElasticity;
+        }
+        // likelihood ratio, with the probability as a control variate (each score has mean 0)
+        double probability = (double) below / sorted.length;
+        double[] trialScores = scores[parameter.ordinal()];
+        double sum = 0;
+        for (int trial = 0; trial < tdfBalances.length; trial++) {
+            sum += ((tdfBalances[trial] < threshold ? 1 : 0) - probability) * trialScores[trial];
+        }
+        return sum / tdfBalances.length;
+    }
+
+    /**
+     * @param threshold a TDF balance
+     * @return          the number of trials whose TDF balance is strictly less than <code>threshold</code>
+     */
+    private int countBelow(double threshold) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] < threshold) {
+                low = mid + 1;
+            }
+            else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @param trsAnnuity        the TRS annual annuity amount
+     * @param withdrawalRates   the withdrawal rates to report
+     * @return                  a string of the effect of a one-percentage-point increase in each assumption on the
+     *                          median withdrawal and on P(earning < TRS) at each of <code>withdrawalRates</code>,
+     *                          intended to be printed to the console
+     */
+    public String toString(int trsAnnuity, double[] withdrawalRates) {
+        int width = 22;
+        String sf = "%" + width + "s";
+        String str = "Effect of a +1 percentage point change in each assumption:\n" + String.format(sf, "withdrawal rate");
+        for (double rate : withdrawalRates) {
+            str += String.format(sf, MonteCarloSimulation.formatRate(rate));
+        }
+        for (Parameter parameter : Parameter.values()) {
+            str += "\n" + String.format(sf, parameter.name().toLowerCase().replace('_', ' ') + ":");
+            str += "\n" + String.format(sf, "median");
+            for (double rate : withdrawalRates) {
+                str += String.format(sf, String.format("%+,d", Math.round(.01 * rate * getMedianSensitivity(parameter))));
+            }
+            str += "\n" + String.format(sf, "P(earning < TRS)");
+            for (double rate : withdrawalRates) {
+                str += String.format("%+" + (width - 4) + ".2f pts",
+                        100 * .01 * getProbabilityBelowSensitivity(parameter, trsAnnuity / rate));
+            }
+        }
+        return str;
+    }
+}
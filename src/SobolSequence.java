@@ -0,0 +1,254 @@
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * A randomly scrambled Sobol low-discrepancy sequence of points in the unit hypercube, for quasi-Monte Carlo
+ * sampling (see <code>SamplingMethod.QUASI_RANDOM</code>).
+ * <p>
+ * Coordinate 1 is the van der Corput sequence in base 2. Every other coordinate is built from its own primitive
+ * polynomial over GF(2), taken in order of increasing degree, with initial direction numbers drawn (once, from a
+ * fixed seed) uniformly from the valid odd values. Each instance then applies a random linear matrix scramble and a
+ * random digital shift (Matousek, 1998), so that every point is uniformly distributed, independent instances give
+ * independent replicates of the whole point set, and the spread of estimates across replicates measures their
+ * error.
+ *
+ * @author Charlie Barnes
+ */
+public class SobolSequence {
+    private static final int BITS = 32;
+    // fixes the initial direction numbers, so that the (unscrambled) sequence is always the same
+    private static final long DIRECTION_NUMBER_SEED = 0x5EB01L;
+
+    private final int dimensions;
+    // directions[d][k] is the (scrambled) k-th direction number of coordinate d
+    private final int[][] directions;
+    private final int[] shift;
+
+    /**
+     * Class constructor
+     * @param dimensions    the (positive) number of coordinates of each point
+     * @param rng           the source of randomness for the scramble and shift
+     */
+    public SobolSequence(int dimensions, RandomGenerator rng) {
+        this.dimensions = dimensions;
+        directions = new int[dimensions][];
+        shift = new int[dimensions];
+        SplittableRandom initialValues = new SplittableRandom(DIRECTION_NUMBER_SEED);
+        int polynomial = 1;
+        for (int d = 0; d < dimensions; d++) {
+            int[] unscrambled;
+            if (d == 0) {
+                unscrambled = new int[BITS];
+                for (int k = 0; k < BITS; k++) {
+                    unscrambled[k] = 1 << (BITS - 1 - k);
+                }
+            }
+            else {
+                polynomial = nextPrimitivePolynomial(polynomial);
+                unscrambled = directionNumbers(polynomial, initialValues);
+            }
+            directions[d] = scramble(unscrambled, rng);
+            shift[d] = rng.nextInt();
+        }
+    }
+
+    public int getDimensions() { return dimensions; }
+
+    /**
+     * @param index the (non-negative) index of a point in the sequence
+     * @param u     an array of length <code>dimensions</code>, which is filled with the point's coordinates, each
+     *              in the open interval <em>(0,1)</em>
+     */
+    public void point(long index, double[] u) {
+        for (int d = 0; d < dimensions; d++) {
+            u[d] = toUniform(digits(d, index));
+        }
+    }
+
+    /**
+     * @return the binary digits of coordinate <code>d</code> of the point with index <code>index</code>
+     */
+    private int digits(int d, long index) {
+        // the point with index i is built from the direction numbers of the 1 bits of i's Gray code
+        long gray = index ^ (index >>> 1);
+        int x = shift[d];
+        for (int k = 0; k < BITS && (gray >>> k) != 0; k++) {
+            if (((gray >>> k) & 1) != 0) {
+                x ^= directions[d][k];
+            }
+        }
+        return x;
+    }
+
+    /**
+     * Generates consecutive points of the sequence cheaply: each point differs from the previous one by a single
+     * direction number per coordinate.
+     */
+    public class Cursor {
+        private final int[] x = new int[dimensions];
+        private long index;
+
+        /**
+         * @param index the (non-negative) index of the first point to generate
+         */
+        public Cursor(long index) {
+            seek(index);
+        }
+
+        /**
+         * Moves the cursor (without allocating anything), so that it next generates the point at <code>index</code>
+         * @param index the (non-negative) index of the next point to generate
+         */
+        public void seek(long index) {
+            this.index = index;
+            for (int d = 0; d < dimensions; d++) {
+                x[d] = digits(d, index);
+            }
+        }
+
+        /**
+         * @param u an array of length <code>dimensions</code>, which is filled with the next point's coordinates
+         */
+        public void next(double[] u) {
+            for (int d = 0; d < dimensions; d++) {
+                u[d] = toUniform(x[d]);
+            }
+            // going from index i to i + 1 flips the Gray code bit at the lowest 0 bit of i
+            int k = Long.numberOfTrailingZeros(~index);
+            for (int d = 0; d < dimensions; d++) {
+                x[d] ^= directions[d][k];
+            }
+            index++;
+        }
+    }
+
+    /**
+     * @return the midpoint of the interval of width 2^-32 whose binary digits are <code>x</code>
+     */
+    private static double toUniform(int x) {
+        return ((x & 0xFFFFFFFFL) + 0.5) / 4294967296.0;
+    }
+
+    /**
+     * @param polynomial    a polynomial over GF(2), with bit i holding the coefficient of x^i
+     * @return              the next primitive polynomial, in order of degree and then of value
+     */
+    private static int nextPrimitivePolynomial(int polynomial) {
+        do {
+            polynomial++;
+        } while (!isPrimitive(polynomial));
+        return polynomial;
+    }
+
+    private static int degree(int polynomial) {
+        return 31 - Integer.numberOfLeadingZeros(polynomial);
+    }
+
+    /**
+     * A polynomial of degree s is primitive if x has multiplicative order 2^s - 1 modulo the polynomial.
+     */
+    private static boolean isPrimitive(int polynomial) {
+        int s = degree(polynomial);
+        if (s < 1 || (polynomial & 1) == 0) {
+            return false;
+        }
+        long order = (1L << s) - 1;
+        if (powerOfX(order, polynomial) != 1) {
+            return false;
+        }
+        // check that no proper divisor of the order works
+        long remaining = order;
+        for (long q = 2; q * q <= remaining; q++) {
+            if (remaining % q == 0) {
+                if (powerOfX(order / q, polynomial) == 1) {
+                    return false;
+                }
+                while (remaining % q == 0) {
+                    remaining /= q;
+                }
+            }
+        }
+        return remaining == 1 || powerOfX(order / remaining, polynomial) != 1;
+    }
+
+    /**
+     * @return x^exponent modulo <code>polynomial</code>, over GF(2)
+     */
+    private static int powerOfX(long exponent, int polynomial) {
+        int s = degree(polynomial);
+        int result = 1;
+        int base = s == 1 ? 1 : 2; // x mod (x + 1) is 1
+        while (exponent > 0) {
+            if ((exponent & 1) != 0) {
+                result = multiply(result, base, polynomial, s);
+            }
+            base = multiply(base, base, polynomial, s);
+            exponent >>= 1;
+        }
+        return result;
+    }
+
+    private static int multiply(int a, int b, int polynomial, int s) {
+        int product = 0;
+        while (b != 0) {
+            if ((b & 1) != 0) {
+                product ^= a;
+            }
+            b >>>= 1;
+            a <<= 1;
+            if (((a >>> s) & 1) != 0) {
+                a ^= polynomial;
+            }
+        }
+        return product;
+    }
+
+    /**
+     * Computes direction numbers with Sobol's recurrence
+     * m_k = 2 a_1 m_(k-1) XOR 4 a_2 m_(k-2) XOR ... XOR 2^s m_(k-s) XOR m_(k-s)
+     */
+    private static int[] directionNumbers(int polynomial, SplittableRandom initialValues) {
+        int s = degree(polynomial);
+        long[] m = new long[BITS + 1];
+        for (int k = 1; k <= s && k <= BITS; k++) {
+            // any odd number less than 2^k
+            m[k] = 2 * initialValues.nextLong(1L << (k - 1)) + 1;
+        }
+        for (int k = s + 1; k <= BITS; k++) {
+            m[k] = m[k - s] ^ (m[k - s] << s);
+            for (int i = 1; i < s; i++) {
+                if (((polynomial >>> (s - i)) & 1) != 0) {
+                    m[k] ^= m[k - i] << i;
+                }
+            }
+        }
+        int[] v = new int[BITS];
+        for (int k = 1; k <= BITS; k++) {
+            v[k - 1] = (int) (m[k] << (BITS - k));
+        }
+        return v;
+    }
+
+    /**
+     * Applies a random nonsingular lower-triangular binary matrix to the digits of every direction number.
+     * Digit j (counting from the most significant) of each scrambled number is the parity of a random subset of
+     * digits 0 through j that always includes digit j.
+     */
+    private static int[] scramble(int[] v, RandomGenerator rng) {
+        int[] rows = new int[BITS];
+        for (int j = 0; j < BITS; j++) {
+            int digit = 1 << (BITS - 1 - j);
+            int higherDigits = j == 0 ? 0 : -1 << (BITS - j);
+            rows[j] = digit | (rng.nextInt() & higherDigits);
+        }
+        int[] scrambled = new int[BITS];
+        for (int k = 0; k < BITS; k++) {
+            for (int j = 0; j < BITS; j++) {
+                if ((Integer.bitCount(rows[j] & v[k]) & 1) != 0) {
+                    scrambled[k] |= 1 << (BITS - 1 - j);
+                }
+            }
+        }
+        return scrambled;
+    }
+}
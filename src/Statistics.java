@@ -1,11 +1,13 @@
 import org.apache.commons.math3.distribution.NormalDistribution;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
 /**
  * This class consists entirely of static methods for computing statistics for sample (<code>Integer</code>)
- * data contained in a <code>List<Integer></code>.
+ * data contained in a <code>List<Integer></code>, or for sample (<code>double</code>) data contained in a
+ * <code>double[]</code>.
  * <p>
  * I'm sure this exists elsewhere.
  *
@@ -90,4 +92,113 @@ public class Statistics {
     public static double getMarginOfError(List<Integer> list, double confidenceLevel) {
         return getZ(confidenceLevel) * sd(list) / Math.sqrt(list.size());
     }
+
+    public static double mean(double[] data) {
+        return Arrays.stream(data).average().getAsDouble();
+    }
+
+    /**
+     * <code>percentile(data, n)</code> returns the <em>100*n</em>th percentile entry of <code>data</code>.
+     * Note that <code>data</code> is sorted in place.
+     * @param data          a <code>double</code> array
+     * @param percentile    a <code>Double</code> value in the interval <em>[0,1]</em>
+     * @throws IllegalArgumentException    if percentile is less than 0 or greater than 1
+     * @return              the <em>100*n</em>th percentile entry of the data, as a <code>double</code>
+     */
+    public static double percentile(double[] data, double percentile) {
+        if (percentile < 0 || percentile > 1) {
+            throw new IllegalArgumentException("percentile must be between 0 and 1, inclusive");
+        }
+        Arrays.sort(data);
+        double doubleIndex = percentile * (data.length - 1);
+        int indexBelow = (int) Math.floor(doubleIndex);
+        int indexAbove = (int) Math.ceil(doubleIndex);
+        return (data[indexBelow] + data[indexAbove]) / 2;
+    }
+
+    public static double median(double[] data) {
+        return percentile(data, 0.5);
+    }
+
+    /**
+     * @param data  a <code>double</code> array containing sample data
+     * @return the unbiased sample variance of the data (as a <code>Double</code>)
+     */
+    public static double variance(double[] data) {
+        double mean = mean(data);
+        return Arrays.stream(data).map(x -> (x - mean) * (x - mean)).sum() / (data.length - 1);
+    }
+
+    /**
+     * @param data  a <code>double</code> array containing sample data
+     * @return the corrected sample standard deviation of the data (as a <code>Double</code>)
+     */
+    public static double sd(double[] data) {
+        return Math.sqrt(variance(data));
+    }
+
+    /**
+     * @param data          a <code>double</code> array
+     * @param threshold     a <code>double</code>
+     * @return              the (<code>double</code>) proportion of entries in <code>data</code> that are strictly
+     *                      less than <code>threshold</code>
+     */
+    public static double percentBelow(double[] data, double threshold) {
+        return (double) Arrays.stream(data).filter(x -> x < threshold).count() / data.length;
+    }
+
+    /**
+     * @param data              a <code>double</code> array containing sample data
+     * @param confidenceLevel   a <code>double</code> in the interval <em>[0,1)</em>
+     * @throws IllegalArgumentException if <code>confidenceLevel</code> is less than 0 or at least 1
+     * @return the margin of error at <code>confidenceLevel</code>, as a <code>double</code>
+     */
+    public static double getMarginOfError(double[] data, double confidenceLevel) {
+        return getZ(confidenceLevel) * sd(data) / Math.sqrt(data.length);
+    }
+
+    /**
+     * The half-width of the Wilson score interval for a binomial proportion, which (unlike the normal
+     * approximation) stays sensible for proportions near 0 or 1
+     * @param proportion        the sample proportion, a <code>double</code> in the interval <em>[0,1]</em>
+     * @param sampleSize        the (positive) number of observations
+     * @param confidenceLevel   a <code>double</code> in the interval <em>[0,1)</em>
+     * @throws IllegalArgumentException if <code>confidenceLevel</code> is less than 0 or at least 1
+     * @return the margin of error of the proportion at <code>confidenceLevel</code>, as a <code>double</code>
+     */
+    public static double getBinomialMarginOfError(double proportion, long sampleSize, double confidenceLevel) {
+        double z = getZ(confidenceLevel);
+        double zSquaredOverN = z * z / sampleSize;
+        return z * Math.sqrt(proportion * (1 - proportion) / sampleSize + zSquaredOverN / (4 * sampleSize))
+                / (1 + zSquaredOverN);
+    }
+
+    /**
+     * The inverse of the standard normal cumulative distribution function, by Acklam's rational approximation
+     * (relative error below 1.15e-9), which is much faster than
+     * <code>NormalDistribution.inverseCumulativeProbability</code>
+     * @param p a <code>double</code> in the open interval <em>(0,1)</em>
+     * @throws IllegalArgumentException if <code>p</code> is not in <em>(0,1)</em>
+     * @return the z-score whose left-tail probability is <code>p</code>
+     */
+    public static double inverseStandardNormal(double p) {
+        if (!(p > 0 && p < 1)) throw new IllegalArgumentException("p must be between 0 and 1, exclusive");
+        double pLow = 0.02425;
+        if (p < pLow) {
+            double q = Math.sqrt(-2 * Math.log(p));
+            return (((((-7.784894002430293e-03 * q - 3.223964580411365e-01) * q - 2.400758277161838e+00) * q
+                    - 2.549732539343734e+00) * q + 4.374664141464968e+00) * q + 2.938163982698783e+00)
+                    / ((((7.784695709041462e-03 * q + 3.224671290700398e-01) * q + 2.445134137142996e+00) * q
+                    + 3.754408661907416e+00) * q + 1);
+        }
+        if (p > 1 - pLow) {
+            return -inverseStandardNormal(1 - p);
+        }
+        double q = p - 0.5;
+        double r = q * q;
+        return (((((-3.969683028665376e+01 * r + 2.209460984245205e+02) * r - 2.759285104469687e+02) * r
+                + 1.383577518672690e+02) * r - 3.066479806614716e+01) * r + 2.506628277459239e+00) * q
+                / (((((-5.447609879822406e+01 * r + 1.615858368580409e+02) * r - 1.556989798598866e+02) * r
+                + 6.680131188771972e+01) * r - 1.328068155288572e+01) * r + 1);
+    }
 }
@@ -0,0 +1,113 @@
+/**
+ * An <code>OutcomeSummary</code> built from mergeable accumulators as the trials run, so that memory doesn't grow
+ * with the number of trials (see <code>MonteCarloSimulation.streaming</code>).
+ * <p>
+ * Error bounds, compared to a <code>DistributionSummary</code> of the same outcomes:
+ * <ul>
+ *     <li>size, mean, standard deviation, margin of error, min, and max are exact (up to floating-point
+ *     rounding);</li>
+ *     <li><code>countBelow</code> and <code>percentBelow</code> are exact for the thresholds registered up front
+ *     (e.g., the TRS annuity at each withdrawal rate);</li>
+ *     <li>percentiles, and counts below any other threshold, come from a <code>QuantileSketch</code> and are within
+ *     its relative accuracy (0.5% by default).</li>
+ * </ul>
+ *
+ * @author Charlie Barnes
+ */
+public class StreamingSummary implements OutcomeSummary {
+    /**
+     * Accumulates the parts of a summary that merge exactly in any order. One is used per parallel task, and the
+     * tasks' accumulators are merged at the end.
+     */
+    static class Accumulator {
+        private final QuantileSketch sketch = new QuantileSketch();
+        private final double[] thresholds;
+        private final long[] countsBelow;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+
+        /**
+         * @param thresholds    the thresholds below which outcomes are counted exactly
+         */
+        Accumulator(double[] thresholds) {
+            this.thresholds = thresholds;
+            countsBelow = new long[thresholds.length];
+        }
+
+        void add(double outcome) {
+            sketch.add(outcome);
+            for (int i = 0; i < thresholds.length; i++) {
+                if (outcome < thresholds[i]) {
+                    countsBelow[i]++;
+                }
+            }
+            min = Math.min(min, outcome);
+            max = Math.max(max, outcome);
+        }
+
+        Accumulator merge(Accumulator other) {
+            sketch.merge(other.sketch);
+            for (int i = 0; i < thresholds.length; i++) {
+                countsBelow[i] += other.countsBelow[i];
+            }
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+            return this;
+        }
+    }
+
+    private final Accumulator accumulator;
+    private final long size;
+    private final double mean;
+    private final double sd;
+    private final double scale;
+
+    /**
+     * Class constructor
+     * @param accumulator   the merged accumulator of every outcome
+     * @param mean          the mean of every outcome
+     * @param sd            the corrected sample standard deviation of every outcome
+     */
+    StreamingSummary(Accumulator accumulator, double mean, double sd) {
+        this(accumulator, mean, sd, 1);
+    }
+
+    private StreamingSummary(Accumulator accumulator, double mean, double sd, double scale) {
+        this.accumulator = accumulator;
+        this.size = accumulator.sketch.getCount();
+        this.mean = mean;
+        this.sd = sd;
+        this.scale = scale;
+    }
+
+    public StreamingSummary scaledBy(double factor) {
+        if (!(factor > 0)) throw new IllegalArgumentException("factor must be positive");
+        return new StreamingSummary(accumulator, mean * factor, sd * factor, scale * factor);
+    }
+
+    public long size() { return size; }
+    public double mean() { return mean; }
+    public double sd() { return sd; }
+    public double min() { return scale * accumulator.min; }
+    public double max() { return scale * accumulator.max; }
+
+    public double percentile(double percentile) {
+        double estimate = accumulator.sketch.percentile(percentile);
+        return scale * Math.min(accumulator.max, Math.max(accumulator.min, estimate));
+    }
+
+    public long countBelow(double threshold) {
+        double unscaled = threshold / scale;
+        for (int i = 0; i < accumulator.thresholds.length; i++) {
+            if (accumulator.thresholds[i] == unscaled) {
+                return accumulator.countsBelow[i];
+            }
+        }
+        return accumulator.sketch.countBelow(unscaled);
+    }
+
+    /**
+     * @return the relative accuracy of percentiles (and of counts below unregistered thresholds)
+     */
+    public double getRelativeAccuracy() { return accumulator.sketch.getRelativeAccuracy(); }
+}
@@ -0,0 +1,75 @@
+import java.util.random.RandomGenerator;
+
+/**
+ * Independent annual returns with fat tails: each year's return is its mean plus its standard deviation times a
+ * Student's t variate rescaled to unit variance, so each year keeps the <code>ReturnSchedule</code>'s mean and
+ * standard deviation, but extreme years (crashes and booms) are more likely than with normal returns. The fewer
+ * the degrees of freedom, the fatter the tails.
+ * <p>
+ * A t variate is <em>Z / sqrt(V / df)</em>, for a standard normal <em>Z</em> and a chi-squared <em>V</em> with
+ * <em>df</em> degrees of freedom; <em>V</em> is drawn as twice a gamma variate, by the method of Marsaglia and
+ * Tsang (2000).
+ *
+ * @author Charlie Barnes
+ */
+public class StudentTReturnModel implements ReturnModel {
+    private final double degreesOfFreedom;
+    // scales a t variate to unit variance
+    private final double standardize;
+    // constants of the gamma sampler, for shape df / 2
+    private final double d;
+    private final double c;
+
+    /**
+     * Class constructor
+     * @param degreesOfFreedom  the degrees of freedom of the t distribution, greater than 2 (so that its variance
+     *                          is finite); around 4 or 5 matches the tails of annual stock returns
+     * @throws IllegalArgumentException if <code>degreesOfFreedom</code> is not greater than 2
+     */
+    public StudentTReturnModel(double degreesOfFreedom) {
+        if (!(degreesOfFreedom > 2)) throw new IllegalArgumentException("degreesOfFreedom must be greater than 2");
+        this.degreesOfFreedom = degreesOfFreedom;
+        standardize = Math.sqrt((degreesOfFreedom - 2) / degreesOfFreedom);
+        d = degreesOfFreedom / 2 - 1.0 / 3;
+        c = 1 / Math.sqrt(9 * d);
+    }
+
+    public void fillReturns(ReturnSchedule schedule, double[] returns, int trials, RandomGenerator rng) {
+        double[] means = schedule.getMeans();
+        double[] sds = schedule.getSds();
+        int years = means.length;
+        for (int trial = 0; trial < trials; trial++) {
+            for (int year = 0; year < years; year++) {
+                double chiSquared = 2 * sampleGamma(rng);
+                double t = ZigguratNormal.sample(rng) / Math.sqrt(chiSquared / degreesOfFreedom);
+                returns[year * trials + trial] = means[year] + sds[year] * standardize * t;
+            }
+        }
+    }
+
+    /**
+     * @param rng   a source of randomness
+     * @return      a gamma variate with shape <em>df / 2</em> (which is greater than 1) and scale 1
+     */
+    private double sampleGamma(RandomGenerator rng) {
+        while (true) {
+            double x = ZigguratNormal.sample(rng);
+            double v = 1 + c * x;
+            if (v <= 0) {
+                continue;
+            }
+            v = v * v * v;
+            double u = rng.nextDouble();
+            if (u < 1 - .0331 * x * x * x * x || Math.log(u) < .5 * x * x + d * (1 - v + Math.log(v))) {
+                return d * v;
+            }
+        }
+    }
+
+    public double getDegreesOfFreedom() { return degreesOfFreedom; }
+
+    public String getDescription() {
+        return String.format("Student-t returns (%s degrees of freedom)",
+                java.math.BigDecimal.valueOf(degreesOfFreedom).stripTrailingZeros().toPlainString());
+    }
+}
@@ -0,0 +1,294 @@
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.IntConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Runs the blocks of trials of a simulation (see <code>MonteCarloSimulation.BLOCK_SIZE</code>) on a dedicated
+ * <code>ForkJoinPool</code> of a fixed size, rather than on the JVM's shared common pool, so a big simulation
+ * can't starve other parallel work, and the cores each simulation uses can be controlled.
+ * <p>
+ * Work is split by recursive halving of the range of blocks, down to runs of a few blocks (about four runs per
+ * thread), so there's one task per run of <code>BLOCK_SIZE</code>-trial blocks rather than per trial. Every
+ * simulation runs on the default scheduler (sized to the number of cores, unless <code>setDefault()</code> says
+ * otherwise), except one started with another scheduler's <code>call()</code>, which runs entirely (including
+ * sorting its outcomes) on that scheduler's pool: e.g., to give each of several members simulated at once its own
+ * share of the cores,
+ * <pre>
+ *     TrialScheduler scheduler = new TrialScheduler(2);
+ *     MonteCarloSimulation sim = scheduler.call(() -&gt; new MonteCarloSimulation(trials, member, seed));
+ * </pre>
+ * The results never depend on the scheduler, since block <em>b</em> always uses random stream <em>b</em>.
+ *
+ * @author Charlie Barnes
+ */
+public class TrialScheduler {
+    private static TrialScheduler defaultScheduler;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Class constructor
+     * @param parallelism   the (positive) number of threads in the scheduler's pool
+     * @throws IllegalArgumentException if <code>parallelism</code> is not positive
+     */
+    public TrialScheduler(int parallelism) {
+        if (parallelism < 1) throw new IllegalArgumentException("parallelism must be positive");
+        pool = new SchedulerPool(parallelism);
+    }
+
+    /**
+     * @return  the scheduler that simulations run on, unless they're started with another scheduler's
+     *          <code>call()</code> (created the first time it's needed, with one thread per core)
+     */
+    public static synchronized TrialScheduler getDefault() {
+        if (defaultScheduler == null) {
+            defaultScheduler = new TrialScheduler(Runtime.getRuntime().availableProcessors());
+        }
+        return defaultScheduler;
+    }
+
+    /**
+     * @param scheduler the scheduler that simulations should run on, unless they're started with another
+     *                  scheduler's <code>call()</code> (the previous default is not shut down)
+     */
+    public static synchronized void setDefault(TrialScheduler scheduler) {
+        if (scheduler == null) throw new IllegalArgumentException("scheduler must not be null");
+        defaultScheduler = scheduler;
+    }
+
+    public int getParallelism() { return pool.getParallelism(); }
+
+    /**
+     * Runs <code>task</code> on this scheduler's pool, along with all the blocks of trials it simulates
+     * @param task  the task, e.g. constructing a <code>MonteCarloSimulation</code>
+     * @return      the task's result
+     */
+    public <T> T call(Supplier<T> task) {
+        if (ForkJoinTask.getPool() == pool) {
+            return task.get();
+        }
+        return pool.submit(task::get).join();
+    }
+
+    /**
+     * Shuts down this scheduler's pool once its running tasks are done
+     */
+    public void shutdown() { pool.shutdown(); }
+
+    /**
+     * @return  the pool that blocks started by the current thread should run on: the pool of the scheduler whose
+     *          worker the current thread is, if any, else the default scheduler's
+     */
+    private static ForkJoinPool currentPool() {
+        ForkJoinPool pool = ForkJoinTask.getPool();
+        return pool instanceof SchedulerPool ? pool : getDefault().pool;
+    }
+
+    /**
+     * @param task  a task to run to completion on the current pool (see <code>currentPool()</code>)
+     * @return      the task's result
+     */
+    private static <T> T invoke(ForkJoinTask<T> task) {
+        ForkJoinPool pool = currentPool();
+        return ForkJoinTask.getPool() == pool ? task.invoke() : pool.invoke(task);
+    }
+
+    /**
+     * @param blocks    a number of blocks
+     * @return          the number of consecutive blocks a single task should run
+     */
+    private static int grain(int blocks) {
+        return Math.max(1, blocks / (4 * currentPool().getParallelism()));
+    }
+
+    /**
+     * Runs <code>body</code> on each block from <code>fromBlock</code> (inclusive) to <code>toBlock</code>
+     * (exclusive), in parallel, on the current pool, and waits for them all to finish
+     * @param fromBlock the first block
+     * @param toBlock   one past the last block
+     * @param body      what to do with each block (given its index)
+     */
+    static void forEachBlock(int fromBlock, int toBlock, IntConsumer body) {
+        forEachBlock(fromBlock, toBlock, () -> null, (workspace, block) -> body.accept(block));
+    }
+
+    /**
+     * Runs <code>body</code> on each block from <code>fromBlock</code> (inclusive) to <code>toBlock</code>
+     * (exclusive), in parallel, on the current pool, and waits for them all to finish. Each task creates a single
+     * workspace (e.g., scratch arrays) for its whole run of consecutive blocks, so there are only a few workspaces
+     * per thread however many trials there are, and the blocks themselves needn't allocate anything.
+     * @param fromBlock the first block
+     * @param toBlock   one past the last block
+     * @param workspace creates a task's workspace
+     * @param body      what to do with each block (given the task's workspace and the block's index)
+     */
+    static <W> void forEachBlock(int fromBlock, int toBlock, Supplier<W> workspace, ObjIntConsumer<W> body) {
+        invoke(new BlockAction<>(fromBlock, toBlock, grain(toBlock - fromBlock), workspace, body));
+    }
+
+    /**
+     * Feeds each block from <code>fromBlock</code> (inclusive) to <code>toBlock</code> (exclusive) to an
+     * accumulator, in parallel, on the current pool: each task accumulates a run of consecutive blocks into a new
+     * accumulator, and the tasks' accumulators are combined
+     * @param fromBlock     the first block
+     * @param toBlock       one past the last block
+     * @param supplier      creates an empty accumulator
+     * @param accumulator   adds a block (given its index) to an accumulator
+     * @param combiner      merges the second accumulator into the first
+     * @return              the accumulator of all the blocks
+     */
+    static <A> A collectBlocks(int fromBlock, int toBlock, Supplier<A> supplier, ObjIntConsumer<A> accumulator,
+                               BiConsumer<A, A> combiner) {
+        return invoke(new BlockTask<>(fromBlock, toBlock, grain(toBlock - fromBlock), supplier, accumulator,
+                combiner));
+    }
+
+    /**
+     * Sorts an array in parallel, on the current pool
+     * @param array an array of <code>double</code>s
+     */
+    static void parallelSort(double[] array) {
+        runOnCurrentPool(() -> Arrays.parallelSort(array));
+    }
+
+    /**
+     * Sorts an array in parallel, on the current pool
+     * @param array an array of <code>float</code>s
+     */
+    static void parallelSort(float[] array) {
+        runOnCurrentPool(() -> Arrays.parallelSort(array));
+    }
+
+    /**
+     * Sorts an array in parallel, on the current pool
+     * @param array         an array
+     * @param comparator    the order to sort it in
+     */
+    static <T> void parallelSort(T[] array, Comparator<? super T> comparator) {
+        runOnCurrentPool(() -> Arrays.parallelSort(array, comparator));
+    }
+
+    /**
+     * @param task  a task whose own subtasks (e.g., those of <code>Arrays.parallelSort</code>) should run on the
+     *              current pool rather than the common pool (subtasks forked by a pool's worker go to that pool)
+     */
+    private static void runOnCurrentPool(Runnable task) {
+        ForkJoinPool pool = currentPool();
+        if (ForkJoinTask.getPool() == pool) {
+            task.run();
+        }
+        else {
+            pool.submit(task).join();
+        }
+    }
+
+    /**
+     * A pool belonging to a <code>TrialScheduler</code>, whose (daemon) workers are named for it
+     */
+    private static final class SchedulerPool extends ForkJoinPool {
+        SchedulerPool(int parallelism) {
+            super(parallelism, new WorkerFactory(), null, false);
+        }
+    }
+
+    /**
+     * Creates the workers of a <code>SchedulerPool</code>, numbering them in the order they're created (their
+     * pool index isn't assigned until they start)
+     */
+    private static final class WorkerFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+        private final AtomicInteger workers = new AtomicInteger();
+
+        @Override
+        public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("trial-scheduler-" + workers.getAndIncrement());
+            return thread;
+        }
+    }
+
+    /**
+     * Runs a range of blocks, halving it until it's at most <code>grain</code> blocks long
+     */
+    private static final class BlockAction<W> extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int fromBlock;
+        private final int toBlock;
+        private final int grain;
+        private final Supplier<W> workspace;
+        private final ObjIntConsumer<W> body;
+
+        BlockAction(int fromBlock, int toBlock, int grain, Supplier<W> workspace, ObjIntConsumer<W> body) {
+            this.fromBlock = fromBlock;
+            this.toBlock = toBlock;
+            this.grain = grain;
+            this.workspace = workspace;
+            this.body = body;
+        }
+
+        @Override
+        protected void compute() {
+            if (toBlock - fromBlock <= grain) {
+                W taskWorkspace = workspace.get();
+                for (int block = fromBlock; block < toBlock; block++) {
+                    body.accept(taskWorkspace, block);
+                }
+                return;
+            }
+            int middle = (fromBlock + toBlock) >>> 1;
+            invokeAll(new BlockAction<>(fromBlock, middle, grain, workspace, body),
+                    new BlockAction<>(middle, toBlock, grain, workspace, body));
+        }
+    }
+
+    /**
+     * Accumulates a range of blocks, halving it until it's at most <code>grain</code> blocks long
+     */
+    private static final class BlockTask<A> extends RecursiveTask<A> {
+        private static final long serialVersionUID = 1L;
+
+        private final int fromBlock;
+        private final int toBlock;
+        private final int grain;
+        private final Supplier<A> supplier;
+        private final ObjIntConsumer<A> accumulator;
+        private final BiConsumer<A, A> combiner;
+
+        BlockTask(int fromBlock, int toBlock, int grain, Supplier<A> supplier, ObjIntConsumer<A> accumulator,
+                  BiConsumer<A, A> combiner) {
+            this.fromBlock = fromBlock;
+            this.toBlock = toBlock;
+            this.grain = grain;
+            this.supplier = supplier;
+            this.accumulator = accumulator;
+            this.combiner = combiner;
+        }
+
+        @Override
+        protected A compute() {
+            if (toBlock - fromBlock <= grain) {
+                A result = supplier.get();
+                for (int block = fromBlock; block < toBlock; block++) {
+                    accumulator.accept(result, block);
+                }
+                return result;
+            }
+            int middle = (fromBlock + toBlock) >>> 1;
+            BlockTask<A> left = new BlockTask<>(fromBlock, middle, grain, supplier, accumulator, combiner);
+            BlockTask<A> right = new BlockTask<>(middle, toBlock, grain, supplier, accumulator, combiner);
+            right.fork();
+            A result = left.compute();
+            combiner.accept(result, right.join());
+            return result;
+        }
+    }
+}
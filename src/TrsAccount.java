@@ -196,6 +196,24 @@ public class TrsAccount {
         return accountBalanceAtResignation;
     }
 
+    /**
+     * @return  the derivative of the predicted account balance at resignation with respect to
+     *          <code>TRS_INTEREST</code> (i.e., the change in the balance per unit change in the interest rate),
+     *          following the same year-by-year recursion as <code>setAccountBalanceAtResignation()</code>
+     */
+    public double getAccountBalanceAtResignationInterestDerivative() {
+        setFutureSalariesTillResignation();
+        double balance = accountBalance;
+        double derivative = 0;
+        for (int i = 0; i < yearsTillResignation; i++) {
+            balance += futureSalariesTillResignation[i] * TRS_CONTRIBUTION;
+            // d/di of (balance * (1 + i)) = (d balance/di) * (1 + i) + balance
+            derivative = derivative * (1 + TRS_INTEREST) + balance;
+            balance *= (1 + TRS_INTEREST);
+        }
+        return derivative;
+    }
+
     public void initializeTrsAccount() {
         Scanner scan = new Scanner(System.in);
 
@@ -18,15 +18,21 @@ public class TrsDecisionDriver {
         System.out.println(member.getTrsAccount().normalBenefitToString());
         System.out.println();
 
-        // run the Monte Carlo simulation
-        MonteCarloSimulation simForMember = new MonteCarloSimulation(100000, member);
+        // run the Monte Carlo simulation, with as many trials as it takes for the mean to be within 1% and each
+        // P(earning < TRS) to be within 0.5 percentage points (at 99% confidence), up to 1,000,000 trials
+        MonteCarloSimulation simForMember = MonteCarloSimulation.adaptive(member, .01, .005, 1000000,
+                new RandomStreams(RandomStreams.newSeed()));
+        // also show the chance of running out of money by age 95, withdrawing an inflation-adjusted income
+        simForMember.setRuinReportAge(95);
+        // and the chance that it lasts for life (with mortality from MortalityTable.txt, if there is one)
+        simForMember.setMortalityTable(MortalityTable.loadOrDefault());
 
         // print results of the Monte Carlo simulation to the console
         System.out.println(simForMember);
         System.out.println();
 
         // draw and save a histogram of Monte Carlo simulation trials
-        TrsHistogram hist = new TrsHistogram(simForMember.getWithdrawalAt3pt3pct(),
+        TrsHistogram hist = new TrsHistogram(simForMember.getWithdrawalSummary(.033),
                 member.getTrsAccount().getNormalBenefit());
         hist.draw();
         StdDraw.save(TrsHistogram.HISTOGRAM_FILE_PATH);
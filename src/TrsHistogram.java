@@ -1,6 +1,4 @@
 import java.awt.*;
-import java.util.Collections;
-import java.util.List;
 
 /**
  * Uses Standard Draw class functionality to draw a histogram specifically formatted
@@ -9,7 +7,7 @@ import java.util.List;
  * @author Charlie Barnes
  */
 public class TrsHistogram {
-    private List<Integer> trials;
+    private OutcomeSummary trials;
     private int trsAnnuity;
     private int max;
     private int[] freqPerBin;
@@ -19,18 +17,18 @@ public class TrsHistogram {
 
     /**
      * Class constructor
-     * @param trials        a <code>List<Integer></code> of trial outcomes from the Monte Carlo Simulation
+     * @param trials        a <code>OutcomeSummary</code> of trial outcomes from the Monte Carlo Simulation
      * @param trsAnnuity    the TRS annual annuity amount, as an <code>int</code>
      */
-    public TrsHistogram(List<Integer> trials, int trsAnnuity) {
+    public TrsHistogram(OutcomeSummary trials, int trsAnnuity) {
         this.trials = trials;
         this.trsAnnuity = trsAnnuity;
         initializeHistogram(trials);
     }
 
-    public void initializeHistogram(List<Integer> trials) {
-        int record = Collections.max(trials);
-        int recordToTrsRatio = (int) Math.ceil((double) record / trsAnnuity);
+    public void initializeHistogram(OutcomeSummary trials) {
+        double record = trials.max();
+        int recordToTrsRatio = (int) Math.ceil(record / trsAnnuity);
         // set the top of the highest bin
         int topTopBin = trsAnnuity * recordToTrsRatio;
         // Note 1: this ensures that topTopBin is an integer multiple (recordToTrsRatio) of trsAnnuity
@@ -55,13 +53,14 @@ public class TrsHistogram {
         // Thus coloring the Histogram bars later will be safe.
 
         // this int array will determine the histogram data (index: bin number; value: bin frequency)
+        // each bin's frequency is the difference of two counts (binary searches, for sorted trials)
         freqPerBin = new int[numBins];
-        for (int trial : trials) {
-            int binDex = (int) Math.floor((double) trial / binWidth);
-            if (binDex == numBins) {
-                binDex--;
-            }
-            freqPerBin[binDex]++;
+        int belowBin = 0;
+        for (int binDex = 0; binDex < numBins; binDex++) {
+            // the top bin also includes any trials exactly at topTopBin
+            int belowNextBin = (int) (binDex == numBins - 1 ? trials.size() : trials.countBelow((binDex + 1) * binWidth));
+            freqPerBin[binDex] = belowNextBin - belowBin;
+            belowBin = belowNextBin;
             // keep track of the maximum frequency
             if (freqPerBin[binDex] > max) {
                 max = freqPerBin[binDex];
@@ -107,7 +106,7 @@ public class TrsHistogram {
 
         // draw and label Vanguard average line
         StdDraw.setPenColor(VANGUARD_DARK_RED);
-        double vanguardAverage = Statistics.mean(trials);
+        double vanguardAverage = trials.mean();
         double vanguardAverageX = vanguardAverage / binWidth;
         StdDraw.line(vanguardAverageX, y2,vanguardAverageX, y3);
         StdDraw.text(vanguardAverageX, y4, "TDF avg. = $" +
@@ -139,7 +138,7 @@ public class TrsHistogram {
         double x0 = 7 * xMax / 8;
         StdDraw.setPenColor(TRS_BLUE);
         StdDraw.filledRectangle(x0, 1.1 * y3 / 2, xMax/150, y3/35);
-        double pctTrsWins = 100 * Statistics.percentBelow(trials, trsAnnuity);
+        double pctTrsWins = 100 * trials.percentBelow(trsAnnuity);
         StdDraw.textLeft(x0 + 1.5*xMax/150, 1.1 * y3 / 2, "TRS better: " + String.format("%.1f%%", pctTrsWins));
         StdDraw.setPenColor(VANGUARD_RED);
         StdDraw.filledRectangle(x0, 0.9 * y3 / 2, xMax/150, y3/35);
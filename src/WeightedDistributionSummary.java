@@ -0,0 +1,184 @@
+
+/**
+ * An immutable summary of a weighted sample distribution (e.g., the importance-sampled trial outcomes of a
+ * <code>MonteCarloSimulation</code>), in which each entry stands for a share of the distribution proportional to
+ * its weight.
+ * <p>
+ * The sample is sorted once, when the summary is built, along with the running total of the weights, so a
+ * percentile or the weighted proportion below a threshold is a binary search. The mean is self-normalized (the
+ * weighted sum divided by the total weight). The standard deviation is corrected as for reliability weights: the
+ * weighted sum of squared deviations is divided by <em>V1 - V2 / V1</em>, where <em>V1</em> is the sum of the
+ * weights and <em>V2</em> the sum of their squares, which is <em>n - 1</em> when the weights are all equal. The
+ * effective sample size is Kish's, <em>V1^2 / V2</em>.
+ *
+ * @author Charlie Barnes
+ */
+public class WeightedDistributionSummary implements OutcomeSummary {
+    private final double[] sorted;
+    // cumulativeWeights[i] is the total weight of sorted[0] through sorted[i], divided by the total weight
+    private final double[] cumulativeWeights;
+    private final double scale;
+    private final double mean;
+    private final double sd;
+    private final double effectiveSampleSize;
+
+    /**
+     * Class constructor
+     * @param data      sample data, as a <code>double</code> array (which is copied, not modified)
+     * @param weights   the (non-negative) weight of each entry of <code>data</code>
+     * @throws IllegalArgumentException if <code>data</code> is empty, if the arrays' lengths differ, or if the
+     *                                  weights don't have a positive sum
+     */
+    public WeightedDistributionSummary(double[] data, double[] weights) {
+        this(data, weights, Double.NaN);
+    }
+
+    /**
+     * Class constructor
+     * @param data                  sample data, as a <code>double</code> array (which is copied, not modified)
+     * @param weights               the (non-negative) weight of each entry of <code>data</code>
+     * @param effectiveSampleSize   the number of independent, unweighted trials that would estimate the mean as
+     *                              precisely as <code>data</code> does (e.g., because the data were stratified), or
+     *                              <code>NaN</code> for Kish's effective sample size
+     * @throws IllegalArgumentException if <code>data</code> is empty, if the arrays' lengths differ, or if the
+     *                                  weights don't have a positive sum
+     */
+    public WeightedDistributionSummary(double[] data, double[] weights, double effectiveSampleSize) {
+        if (data.length == 0) throw new IllegalArgumentException("data must be non-empty");
+        if (weights.length != data.length) throw new IllegalArgumentException("data and weights must be the same length");
+        sorted = data.clone();
+        TrialScheduler.parallelSort(sorted);
+        // put each entry's weight at the position of its value: the first position of a run of equal values, plus
+        // the number of that run's positions already taken (which of equal values gets which weight doesn't matter)
+        double[] sortedWeights = new double[data.length];
+        int[] taken = new int[data.length];
+        for (int i = 0; i < data.length; i++) {
+            int first = firstPosition(sorted, data[i]);
+            sortedWeights[first + taken[first]++] = weights[i];
+        }
+
+        cumulativeWeights = new double[data.length];
+        double totalWeight = 0;
+        double totalSquaredWeight = 0;
+        double weightedSum = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            double weight = sortedWeights[i];
+            totalWeight += weight;
+            totalSquaredWeight += weight * weight;
+            weightedSum += weight * sorted[i];
+            cumulativeWeights[i] = totalWeight;
+        }
+        if (!(totalWeight > 0)) throw new IllegalArgumentException("weights must have a positive sum");
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            cumulativeWeights[i] /= totalWeight;
+        }
+        scale = 1;
+        mean = weightedSum / totalWeight;
+        double weightedSquaredDeviations = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            weightedSquaredDeviations += sortedWeights[i] * (sorted[i] - mean) * (sorted[i] - mean);
+        }
+        // (with all the weight on a single entry, there's no spread to estimate)
+        double correctedWeight = totalWeight - totalSquaredWeight / totalWeight;
+        sd = correctedWeight > 0 ? Math.sqrt(weightedSquaredDeviations / correctedWeight) : 0;
+        this.effectiveSampleSize = Double.isNaN(effectiveSampleSize) ? totalWeight * totalWeight / totalSquaredWeight
+                : effectiveSampleSize;
+    }
+
+    private WeightedDistributionSummary(WeightedDistributionSummary summary, double factor) {
+        sorted = summary.sorted;
+        cumulativeWeights = summary.cumulativeWeights;
+        scale = summary.scale * factor;
+        mean = summary.mean * factor;
+        sd = summary.sd * factor;
+        effectiveSampleSize = summary.effectiveSampleSize;
+    }
+
+    public WeightedDistributionSummary scaledBy(double factor) {
+        if (!(factor > 0)) throw new IllegalArgumentException("factor must be positive");
+        return new WeightedDistributionSummary(this, factor);
+    }
+
+    public long size() { return sorted.length; }
+    public double mean() { return mean; }
+    public double sd() { return sd; }
+    public double effectiveSampleSize() { return effectiveSampleSize; }
+    public double min() { return scale * sorted[0]; }
+    public double max() { return scale * sorted[sorted.length - 1]; }
+
+    /**
+     * @param percentile    a <code>Double</code> value in the interval <em>[0,1]</em>
+     * @throws IllegalArgumentException    if percentile is less than 0 or greater than 1
+     * @return              the smallest entry at which the running share of the total weight reaches
+     *                      <code>percentile</code>
+     */
+    public double percentile(double percentile) {
+        if (percentile < 0 || percentile > 1) {
+            throw new IllegalArgumentException("percentile must be between 0 and 1, inclusive");
+        }
+        // binary search for the first entry whose cumulative weight is at least percentile
+        int low = 0;
+        int high = sorted.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cumulativeWeights[mid] < percentile) {
+                low = mid + 1;
+            }
+            else {
+                high = mid;
+            }
+        }
+        return scale * sorted[low];
+    }
+
+    /**
+     * @param threshold a <code>double</code>
+     * @return          the share of the total weight carried by entries strictly less than <code>threshold</code>
+     */
+    public double percentBelow(double threshold) {
+        // binary search for the first entry that is at least threshold
+        double unscaled = threshold / scale;
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] < unscaled) {
+                low = mid + 1;
+            }
+            else {
+                high = mid;
+            }
+        }
+        return low == 0 ? 0 : Math.min(1, cumulativeWeights[low - 1]);
+    }
+
+    /**
+     * @param threshold a <code>double</code>
+     * @return          the number of (unweighted) trials that the weighted share below <code>threshold</code> is
+     *                  equivalent to, i.e. <code>percentBelow(threshold) * size()</code>, rounded
+     */
+    public long countBelow(double threshold) {
+        return Math.round(percentBelow(threshold) * sorted.length);
+    }
+
+    /**
+     * @param sorted    an array sorted in the order of <code>Double.compare</code> (as <code>Arrays.sort</code> sorts
+     *                  it)
+     * @param value     a <code>double</code> that is in <code>sorted</code>
+     * @return          the index of the first entry of <code>sorted</code> equal to <code>value</code> (in that order)
+     */
+    private static int firstPosition(double[] sorted, double value) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (Double.compare(sorted[mid], value) < 0) {
+                low = mid + 1;
+            }
+            else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,83 @@
+import java.util.random.RandomGenerator;
+
+/**
+ * Samples the standard normal distribution with the ziggurat method of Marsaglia and Tsang (2000), using 128
+ * layers. The vast majority of draws cost one <code>nextLong()</code>, one table lookup, one comparison, and one
+ * multiplication.
+ * <p>
+ * Unlike the original algorithm, the layer index and the magnitude are taken from independent bits of a 64-bit
+ * draw, which avoids the correlation between them that Doornik (2005) pointed out.
+ *
+ * @author Charlie Barnes
+ */
+public class ZigguratNormal {
+    private static final int LAYERS = 128;
+    // the x-coordinate where the base layer meets the tail
+    private static final double R = 3.442619855899;
+    // the area of each layer (and of the base layer, including its tail)
+    private static final double V = 9.91256303526217e-3;
+    private static final double M = 2147483648.0; // 2^31
+
+    private static final int[] kn = new int[LAYERS];
+    private static final double[] wn = new double[LAYERS];
+    private static final double[] fn = new double[LAYERS];
+
+    static {
+        double dn = R;
+        double tn = dn;
+        double q = V / Math.exp(-.5 * dn * dn);
+        kn[0] = (int) ((dn / q) * M);
+        kn[1] = 0;
+        wn[0] = q / M;
+        wn[LAYERS - 1] = dn / M;
+        fn[0] = 1.;
+        fn[LAYERS - 1] = Math.exp(-.5 * dn * dn);
+        for (int i = LAYERS - 2; i >= 1; i--) {
+            dn = Math.sqrt(-2. * Math.log(V / dn + Math.exp(-.5 * dn * dn)));
+            kn[i + 1] = (int) ((dn / tn) * M);
+            tn = dn;
+            fn[i] = Math.exp(-.5 * dn * dn);
+            wn[i] = dn / M;
+        }
+    }
+
+    /**
+     * @param rng   the source of uniformly distributed bits
+     * @return      a standard normal sample, as a <code>double</code>
+     */
+    public static double sample(RandomGenerator rng) {
+        long bits = rng.nextLong();
+        int hz = (int) (bits >> 32);
+        int iz = (int) bits & (LAYERS - 1);
+        // fast path: the point falls strictly inside the rectangle of its layer
+        if (Math.abs(hz) < kn[iz]) {
+            return hz * wn[iz];
+        }
+        return sampleSlowPath(rng, hz, iz);
+    }
+
+    private static double sampleSlowPath(RandomGenerator rng, int hz, int iz) {
+        while (true) {
+            double x = hz * wn[iz];
+            // base layer: sample from the tail beyond R
+            if (iz == 0) {
+                double y;
+                do {
+                    x = -Math.log(1 - rng.nextDouble()) / R;
+                    y = -Math.log(1 - rng.nextDouble());
+                } while (y + y < x * x);
+                return hz > 0 ? R + x : -R - x;
+            }
+            // wedge: accept if the point falls under the density curve
+            if (fn[iz] + rng.nextDouble() * (fn[iz - 1] - fn[iz]) < Math.exp(-.5 * x * x)) {
+                return x;
+            }
+            long bits = rng.nextLong();
+            hz = (int) (bits >> 32);
+            iz = (int) bits & (LAYERS - 1);
+            if (Math.abs(hz) < kn[iz]) {
+                return hz * wn[iz];
+            }
+        }
+    }
+}
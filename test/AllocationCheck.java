@@ -0,0 +1,100 @@
+import java.lang.management.ManagementFactory;
+import java.util.function.IntConsumer;
+
+/**
+ * An allocation-regression check for the trial hot path. It runs warmed-up simulations under the JVM's thread
+ * allocation counters (<code>com.sun.management.ThreadMXBean.getThreadAllocatedBytes</code>), summed over all
+ * threads since the blocks run on the <code>TrialScheduler</code>'s workers, and fails if the bytes allocated per
+ * trial exceed a fixed bound. Each run's bytes per trial are measured as the difference between a run of
+ * <code>LARGE_TRIALS</code> and one of <code>SMALL_TRIALS</code>, so setup that doesn't grow with the number of
+ * trials (the schedule, the per-task workspaces) cancels out.
+ * <p>
+ * The sampling kernels and the streaming simulation write into preallocated or constant-size storage, so all
+ * they may allocate per trial is their share of one generator per <code>BLOCK_SIZE</code>-trial block. A full
+ * <code>MonteCarloSimulation</code> keeps two doubles per trial (its TDF balances, and their sorted copy in its
+ * <code>DistributionSummary</code>), and may allocate nothing else per trial.
+ * <p>
+ * Run with <code>java -cp out:lib/* AllocationCheck</code> (after compiling <code>src</code> and <code>test</code>
+ * into <code>out</code>); it exits with status 1 if any bound is exceeded.
+ *
+ * @author Charlie Barnes
+ */
+public class AllocationCheck {
+    private static final int SMALL_TRIALS = 1 << 16;
+    private static final int LARGE_TRIALS = 1 << 18;
+    private static final int WARMUP_RUNS = 5;
+
+    // one generator per block, plus slack for the scheduler's task objects
+    private static final double KERNEL_BYTES_PER_TRIAL = 1;
+    private static final double SIMULATION_BYTES_PER_TRIAL = 2 * Double.BYTES + KERNEL_BYTES_PER_TRIAL;
+
+    private static final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static boolean failed;
+
+    /**
+     * @return the bytes allocated so far by all live threads
+     */
+    private static long allocatedBytes() {
+        long bytes = 0;
+        for (long id : threads.getAllThreadIds()) {
+            long threadBytes = threads.getThreadAllocatedBytes(id);
+            // -1 if the thread has died since getAllThreadIds()
+            if (threadBytes > 0) bytes += threadBytes;
+        }
+        return bytes;
+    }
+
+    /**
+     * @param run   runs a simulation of the given number of trials
+     * @return      the bytes it allocates per trial (beyond what it allocates regardless of the number of trials)
+     */
+    private static double bytesPerTrial(IntConsumer run) {
+        for (int i = 0; i < WARMUP_RUNS; i++) run.accept(LARGE_TRIALS);
+        long before = allocatedBytes();
+        run.accept(SMALL_TRIALS);
+        long between = allocatedBytes();
+        run.accept(LARGE_TRIALS);
+        long after = allocatedBytes();
+        return ((after - between) - (between - before)) / (double) (LARGE_TRIALS - SMALL_TRIALS);
+    }
+
+    private static void check(String name, double bound, IntConsumer run) {
+        double bytes = bytesPerTrial(run);
+        boolean passed = bytes <= bound;
+        System.out.printf("%-6s %-40s %6.2f bytes/trial (bound %.0f)%n", passed ? "ok" : "FAILED", name, bytes, bound);
+        if (!passed) failed = true;
+    }
+
+    public static void main(String[] args) {
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            System.out.println("this JVM doesn't count thread allocation");
+            System.exit(1);
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        TrsMember member = new TrsMember("Jane Doe", "", "01/01/1990");
+        member.getTrsAccount().setTier(5);
+        member.getTrsAccount().setYearsOfService(10);
+        member.getTrsAccount().setYearsTillResignation(0);
+        member.getTrsAccount().setHighestSalaries(new int[]{69083, 66384, 66384, 63770, 57502});
+        member.getTrsAccount().setAccountBalance(42373);
+        ReturnSchedule schedule = new ReturnSchedule(member.getTrsAccount());
+
+        double[] growthFactors = new double[LARGE_TRIALS];
+        double[] weights = new double[LARGE_TRIALS];
+        for (SamplingMethod samplingMethod : SamplingMethod.values()) {
+            check("kernel, " + samplingMethod, KERNEL_BYTES_PER_TRIAL, trials ->
+                    MonteCarloSimulation.simulateGrowthFactors(schedule, growthFactors, weights, null, 0, trials,
+                            new RandomStreams(1), samplingMethod));
+        }
+        check("streaming simulation", KERNEL_BYTES_PER_TRIAL, trials ->
+                MonteCarloSimulation.streaming(trials, member, new RandomStreams(1)).getSummary());
+        check("MonteCarloSimulation, MONTE_CARLO", SIMULATION_BYTES_PER_TRIAL, trials ->
+                new MonteCarloSimulation(trials, member, new RandomStreams(1), SamplingMethod.MONTE_CARLO)
+                        .getSummary());
+
+        if (failed) System.exit(1);
+    }
+}